@@ -0,0 +1,71 @@
+package de.flapdoodle.embed.mongo.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.flapdoodle.embed.mongo.config.IMongodConfig;
+import de.flapdoodle.embed.mongo.config.MongoCmdOptionsBuilder;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.runtime.Mongod;
+import de.flapdoodle.embed.process.config.store.FileType;
+import de.flapdoodle.embed.process.extract.IExtractedFileSet;
+import de.flapdoodle.embed.process.extract.ImmutableExtractedFileSet;
+
+/**
+ * Building the mongod command line from a config with most options set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommandLineBenchmark {
+
+    private IMongodConfig config;
+    private IExtractedFileSet files;
+    private File dbDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        config = new MongodConfigBuilder()
+                .version(FakeMongod.VERSION)
+                .net(new Net("127.0.0.1", 27017, false))
+                .replication(new Storage(null, "rs0", 128))
+                .cmdOptions(new MongoCmdOptionsBuilder()
+                        .useStorageEngine("wiredTiger")
+                        .wiredTigerCacheSizeGB(1)
+                        .syncDelay(0)
+                        .enableTextSearch(true)
+                        .build())
+                .setParameter("diagnosticDataCollectionEnabled", "false")
+                .withLaunchArgument("--quiet")
+                .build();
+        File baseDir = new File(System.getProperty("java.io.tmpdir"));
+        files = ImmutableExtractedFileSet.builder(baseDir)
+                .file(FileType.Executable, new File(baseDir, "mongod"))
+                .build();
+        dbDir = new File(baseDir, "db");
+    }
+
+    @Benchmark
+    public List<String> getCommandLine() throws UnknownHostException {
+        return Mongod.getCommandLine(config, files, dbDir);
+    }
+}
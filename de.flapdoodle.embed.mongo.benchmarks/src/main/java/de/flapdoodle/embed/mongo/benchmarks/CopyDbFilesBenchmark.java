@@ -0,0 +1,102 @@
+package de.flapdoodle.embed.mongo.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.flapdoodle.embed.mongo.config.processlistener.CopyDbFilesIntoDirBeforeProcessStart;
+import de.flapdoodle.embed.mongo.config.processlistener.MaterializeDbTemplateBeforeProcessStart;
+
+/**
+ * Materializing a db dir before start, plain copy against clone/link/copy.
+ * The source looks like a small wiredTiger db dir: a few collection and
+ * index files plus the immutable WiredTiger files.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CopyDbFilesBenchmark {
+
+    @Param({ "1", "16" })
+    public int sizeInMb;
+
+    @Param({ "8" })
+    public int collections;
+
+    private File source;
+    private File destination;
+
+    @Setup(Level.Trial)
+    public void createSource() throws IOException {
+        source = Files.createTempDirectory("embedmongo-benchmark-source").toFile();
+        Random random = new Random(4711);
+        writeFile(new File(source, "WiredTiger"), 1024, random);
+        writeFile(new File(source, "storage.bson"), 1024, random);
+        long size = sizeInMb * 1024L * 1024L / (collections * 2);
+        for (int i = 0; i < collections; i++) {
+            writeFile(new File(source, "collection-" + i + ".wt"), size, random);
+            writeFile(new File(source, "index-" + i + ".wt"), size, random);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createDestination() throws IOException {
+        destination = Files.createTempDirectory("embedmongo-benchmark-db").toFile();
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteDestination() throws IOException {
+        FileUtils.deleteDirectory(destination);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSource() throws IOException {
+        FileUtils.deleteDirectory(source);
+    }
+
+    @Benchmark
+    public File copy() {
+        new CopyDbFilesIntoDirBeforeProcessStart(source).onBeforeProcessStart(destination, true);
+        return destination;
+    }
+
+    @Benchmark
+    public File materialize() {
+        new MaterializeDbTemplateBeforeProcessStart(source).onBeforeProcessStart(destination, true);
+        return destination;
+    }
+
+    private static void writeFile(File file, long size, Random random) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            long written = 0;
+            while (written < size) {
+                random.nextBytes(buffer);
+                int length = (int) Math.min(buffer.length, size - written);
+                out.write(buffer, 0, length);
+                written += length;
+            }
+        }
+    }
+}
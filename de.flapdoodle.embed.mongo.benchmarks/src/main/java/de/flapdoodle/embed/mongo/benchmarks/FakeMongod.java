@@ -0,0 +1,224 @@
+package de.flapdoodle.embed.mongo.benchmarks;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import de.flapdoodle.embed.mongo.Command;
+import de.flapdoodle.embed.mongo.Paths;
+import de.flapdoodle.embed.mongo.config.DownloadConfigBuilder;
+import de.flapdoodle.embed.mongo.config.ExtractedArtifactStoreBuilder;
+import de.flapdoodle.embed.mongo.config.IMongodConfig;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.config.RuntimeConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Timeout;
+import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.config.IRuntimeConfig;
+import de.flapdoodle.embed.process.config.io.ProcessOutput;
+import de.flapdoodle.embed.process.config.store.IDownloadConfig;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.io.Processors;
+import de.flapdoodle.embed.process.io.directories.FixedPath;
+import de.flapdoodle.embed.process.store.IDownloader;
+
+/**
+ * A warm artifact store whose mongod archive contains a shell script instead
+ * of the real binary, so the benchmarks run offline and measure embedmongo,
+ * not mongod. The script prints the startup log lines and waits to be killed.
+ * A shell script can not listen on a port, so {@link Port} listens on its
+ * behalf and turns the shutdown command into a SIGTERM, see
+ * {@link #config(Port, long)}.
+ *
+ * Needs a posix shell, the archive is always a tgz.
+ */
+public class FakeMongod {
+
+    public static final IFeatureAwareVersion VERSION = Version.Main.PRODUCTION;
+
+    private static final String SCRIPT = "fake-mongod.sh";
+    private static final String LOOPBACK = "127.0.0.1";
+
+    private final File baseDir;
+    private final IRuntimeConfig runtimeConfig;
+
+    public FakeMongod() throws IOException {
+        baseDir = java.nio.file.Files.createTempDirectory("embedmongo-benchmark").toFile();
+        File artifactStore = new File(baseDir, "artifacts");
+        File extractDir = new File(baseDir, "extracted");
+
+        Distribution distribution = Distribution.detectFor(VERSION);
+        Paths paths = new Paths(Command.MongoD);
+        File archive = new File(artifactStore, paths.getPath(distribution));
+        String archiveName = archive.getName().replace(".tgz", "");
+        writeArchive(archive, archiveName + "/bin/" + paths.getFileSet(distribution).entries().get(0).destination());
+
+        IDownloadConfig downloadConfig = new DownloadConfigBuilder()
+                .defaultsForCommand(Command.MongoD)
+                .artifactStorePath(new FixedPath(artifactStore.getAbsolutePath()))
+                .build();
+        runtimeConfig = new RuntimeConfigBuilder()
+                .defaults(Command.MongoD)
+                .processOutput(new ProcessOutput(Processors.silent(), Processors.silent(), Processors.silent()))
+                .artifactStore(new ExtractedArtifactStoreBuilder()
+                        .defaults(Command.MongoD)
+                        .streamingExtraction(true)
+                        .download(downloadConfig)
+                        .downloader(new Offline())
+                        .extractDir(new FixedPath(extractDir.getAbsolutePath())))
+                // no shutdown hook per started process, benchmarks start thousands
+                .daemonProcess(false)
+                .build();
+    }
+
+    public IRuntimeConfig runtimeConfig() {
+        return runtimeConfig;
+    }
+
+    /**
+     * @param shutdownTimeout 0 for the shutdown command with a fixed pause,
+     *            greater than 0 to wait for the process exit after the
+     *            shutdown command
+     */
+    public static IMongodConfig config(Port port, long shutdownTimeout) throws IOException {
+        return new MongodConfigBuilder()
+                .version(VERSION)
+                .net(new Net(LOOPBACK, port.port(), false))
+                .timeout(new Timeout(new Timeout().getStartupTimeout(), shutdownTimeout))
+                .build();
+    }
+
+    public File baseDir() {
+        return baseDir;
+    }
+
+    public void delete() throws IOException {
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    private static void writeArchive(File archive, String executableEntry) throws IOException {
+        if (!archive.getParentFile().isDirectory() && !archive.getParentFile().mkdirs()) {
+            throw new IOException("could not create " + archive.getParentFile());
+        }
+        byte[] script;
+        try (InputStream in = FakeMongod.class.getResourceAsStream("/" + SCRIPT)) {
+            script = IOUtils.toByteArray(in);
+        }
+        try (OutputStream out = new FileOutputStream(archive);
+                TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(out))) {
+            TarArchiveEntry entry = new TarArchiveEntry(executableEntry);
+            entry.setSize(script.length);
+            entry.setMode(0755);
+            tar.putArchiveEntry(entry);
+            tar.write(script);
+            tar.closeArchiveEntry();
+        }
+    }
+
+    /**
+     * Listens on a free loopback port for a fake mongod. Like mongod it closes
+     * the connection on the shutdown command and the process exits, here
+     * because it gets a SIGTERM. Spawning kill adds about a millisecond that a
+     * real mongod does not need.
+     */
+    public static class Port implements Closeable {
+
+        private static final int HEADER_LENGTH = 4;
+        private static final byte[] SHUTDOWN = "shutdown".getBytes(StandardCharsets.US_ASCII);
+
+        private final ServerSocket socket;
+        private volatile int pid = -1;
+
+        public Port() throws IOException {
+            socket = new ServerSocket(0, 50, InetAddress.getByName(LOOPBACK));
+            Thread acceptor = new Thread(this::accept, "fake mongod port " + socket.getLocalPort());
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        public int port() {
+            return socket.getLocalPort();
+        }
+
+        /**
+         * @param pid process that gets the SIGTERM on the shutdown command
+         */
+        public void processStarted(int pid) {
+            this.pid = pid;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        private void accept() {
+            while (!socket.isClosed()) {
+                try (Socket client = socket.accept()) {
+                    if (contains(readMessage(client.getInputStream()), SHUTDOWN) && pid != -1) {
+                        new ProcessBuilder("kill", "-TERM", String.valueOf(pid)).start().waitFor();
+                    }
+                } catch (IOException e) {
+                    // closed or client gone
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private static byte[] readMessage(InputStream in) throws IOException {
+            byte[] header = new byte[HEADER_LENGTH];
+            if (IOUtils.read(in, header) < HEADER_LENGTH) {
+                return header;
+            }
+            int length = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN).getInt();
+            byte[] ret = new byte[Math.max(HEADER_LENGTH, length)];
+            System.arraycopy(header, 0, ret, 0, HEADER_LENGTH);
+            IOUtils.read(in, ret, HEADER_LENGTH, ret.length - HEADER_LENGTH);
+            return ret;
+        }
+
+        private static boolean contains(byte[] message, byte[] part) {
+            for (int i = 0; i <= message.length - part.length; i++) {
+                int j = 0;
+                while (j < part.length && message[i + j] == part[j]) {
+                    j++;
+                }
+                if (j == part.length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static class Offline implements IDownloader {
+
+        @Override
+        public String getDownloadUrl(IDownloadConfig runtime, Distribution distribution) {
+            throw new IllegalStateException("benchmarks run offline, " + distribution + " should be in the artifact store");
+        }
+
+        @Override
+        public File download(IDownloadConfig runtime, Distribution distribution) throws IOException {
+            throw new IOException("benchmarks run offline, " + distribution + " should be in the artifact store");
+        }
+    }
+}
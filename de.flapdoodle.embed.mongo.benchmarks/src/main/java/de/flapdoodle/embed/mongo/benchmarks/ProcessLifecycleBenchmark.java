@@ -0,0 +1,123 @@
+package de.flapdoodle.embed.mongo.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.IMongodConfig;
+
+/**
+ * Prepare, start and stop of a mongod, with {@link FakeMongod} as binary.
+ * {@code stop} goes through the shutdown command, with the fixed pause
+ * ({@code shutdownTimeout} 0) or waiting for the process exit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class ProcessLifecycleBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Runtime {
+
+        @Param({ "0", "10000" })
+        long shutdownTimeout;
+
+        FakeMongod fakeMongod;
+        FakeMongod.Port port;
+        MongodStarter starter;
+        IMongodConfig config;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            fakeMongod = new FakeMongod();
+            port = new FakeMongod.Port();
+            starter = MongodStarter.getInstance(fakeMongod.runtimeConfig());
+            config = FakeMongod.config(port, shutdownTimeout);
+            // extract once, all benchmarks run on a warm cache
+            starter.prepare(config).stop();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            port.close();
+            fakeMongod.delete();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Prepared {
+
+        MongodExecutable executable;
+        MongodProcess process;
+
+        @Setup(Level.Invocation)
+        public void setUp(Runtime runtime) {
+            executable = runtime.starter.prepare(runtime.config);
+            process = null;
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown(Runtime runtime) {
+            if (process != null) {
+                runtime.port.processStarted(process.getProcessId());
+                process.stop();
+            }
+            executable.stop();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Started {
+
+        MongodExecutable executable;
+        MongodProcess process;
+
+        @Setup(Level.Invocation)
+        public void setUp(Runtime runtime) throws IOException {
+            executable = runtime.starter.prepare(runtime.config);
+            process = executable.start();
+            runtime.port.processStarted(process.getProcessId());
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            executable.stop();
+        }
+    }
+
+    @Benchmark
+    public MongodExecutable prepareOnWarmCache(Runtime runtime) {
+        MongodExecutable executable = runtime.starter.prepare(runtime.config);
+        executable.stop();
+        return executable;
+    }
+
+    @Benchmark
+    public MongodProcess startToReady(Prepared prepared) throws IOException {
+        prepared.process = prepared.executable.start();
+        return prepared.process;
+    }
+
+    @Benchmark
+    public void stop(Started started) {
+        started.process.stop();
+    }
+}
@@ -0,0 +1,22 @@
+#!/bin/sh
+# Stands in for mongod in the benchmarks: prints the log lines embedmongo
+# waits for and runs until it gets killed. Does not open the port, the
+# benchmark listens on it and sends a TERM on the shutdown command.
+
+port=27017
+while [ $# -gt 0 ]; do
+    case "$1" in
+        --port) port="$2"; shift ;;
+    esac
+    shift
+done
+
+child=
+trap 'if [ -n "$child" ]; then kill $child 2>/dev/null; fi; exit 0' TERM INT
+
+echo "MongoDB starting : pid=$$ port=$port dbpath=fake 64-bit host=fake"
+echo "[initandlisten] waiting for connections on port $port"
+
+sleep 3600 &
+child=$!
+wait $child
@@ -0,0 +1,86 @@
+package de.flapdoodle.embed.mongo;
+
+import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
+import de.flapdoodle.embed.mongo.store.ArtifactBundleWriter;
+import de.flapdoodle.embed.process.config.store.FileSet;
+import de.flapdoodle.embed.process.distribution.ArchiveType;
+import de.flapdoodle.embed.process.distribution.Distribution;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static de.flapdoodle.embed.mongo.Command.MongoD;
+
+/**
+ * Writes an artifact bundle for air-gapped builds, see
+ * {@link de.flapdoodle.embed.mongo.config.ExtractedArtifactStoreBuilder#bundle(File)}.
+ *
+ * <pre>
+ * &lt;bundleFile&gt; &lt;cacheDir&gt; &lt;version&gt;... [--commands mongod,mongos,...]
+ * </pre>
+ *
+ * Missing archives are downloaded into the cache dir first.
+ */
+public class MongoArtifactBundle {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("usage: <bundleFile> <cacheDir> <version>... [--commands mongod,mongos,...]");
+            System.exit(1);
+        }
+        List<String> versions = new ArrayList<>();
+        List<Command> commands = Collections.singletonList(MongoD);
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--commands") && i + 1 < args.length) {
+                commands = MongoDownloadAndExtract.resolveCommands(args[++i]);
+            } else {
+                versions.add(args[i]);
+            }
+        }
+        new MongoArtifactBundle().writeBundle(new File(args[0]), args[1], versions, commands);
+    }
+
+    public void writeBundle(File bundle, String cacheDir, List<String> versions, List<Command> commands) throws IOException {
+        for (MongoDownloadAndExtract.Result result : new MongoDownloadAndExtract()
+                .downloadArtifactsAndExtract(cacheDir, versions, commands, 1)) {
+            if (result.failure() != null) {
+                throw new IOException("could not download " + result, result.failure());
+            }
+        }
+
+        Set<IFeatureAwareVersion> resolved = new LinkedHashSet<>();
+        for (String version : versions) {
+            resolved.addAll(MongoDownloadAndExtract.resolveVersions(version));
+        }
+
+        File workDir = Files.createTempDirectory("embedmongo-bundle").toFile();
+        ArtifactBundleWriter writer = new ArtifactBundleWriter();
+        for (IFeatureAwareVersion version : resolved) {
+            Distribution distribution = Distribution.detectFor(version);
+            // one pass over each archive for all commands
+            Map<String, FileSet.Entry> entries = new LinkedHashMap<>();
+            Paths paths = null;
+            for (Command command : commands) {
+                paths = new Paths(command);
+                for (FileSet.Entry entry : paths.getFileSet(distribution).entries()) {
+                    entries.put(entry.destination(), entry);
+                }
+            }
+            String archivePath = paths.getPath(distribution);
+            ArchiveType archiveType = paths.getArchiveType(distribution);
+            writer.addArchive(archivePath, new File(cacheDir, archivePath), archiveType,
+                    new ArrayList<>(entries.values()), workDir);
+            System.out.println("added " + entries.keySet() + " of " + archivePath);
+        }
+        writer.writeTo(bundle);
+        System.out.println("wrote " + bundle + " (" + bundle.length() + " bytes)");
+    }
+}
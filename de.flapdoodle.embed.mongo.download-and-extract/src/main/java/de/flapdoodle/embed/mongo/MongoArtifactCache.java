@@ -0,0 +1,51 @@
+package de.flapdoodle.embed.mongo;
+
+import de.flapdoodle.embed.mongo.store.ArtifactCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Inspects and prunes the artifact cache of {@link de.flapdoodle.embed.mongo.config.ExtractedArtifactStoreBuilder#cacheSizeLimit(long)}.
+ *
+ * <pre>
+ * inspect &lt;cacheDir&gt;
+ * prune &lt;cacheDir&gt; &lt;maxSize, e.g. 2G&gt;
+ * </pre>
+ */
+public class MongoArtifactCache {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("inspect")) {
+            new MongoArtifactCache().inspect(new File(args[1]));
+        } else if (args.length == 3 && args[0].equals("prune")) {
+            new MongoArtifactCache().prune(new File(args[1]), ArtifactCache.parseSize(args[2]));
+        } else {
+            System.err.println("usage: inspect <cacheDir>");
+            System.err.println("       prune <cacheDir> <maxSize, e.g. 512M or 2G>");
+            System.exit(1);
+        }
+    }
+
+    public void inspect(File cacheDir) throws IOException {
+        ArtifactCache cache = new ArtifactCache(cacheDir);
+        List<ArtifactCache.Entry> entries = cache.entries();
+        long total = 0;
+        System.out.println("least recently used first:");
+        for (ArtifactCache.Entry entry : entries) {
+            System.out.println(entry);
+            total += entry.size();
+        }
+        System.out.println(entries.size() + " archives, " + total + " bytes");
+    }
+
+    public void prune(File cacheDir, long maxSize) throws IOException {
+        ArtifactCache cache = new ArtifactCache(cacheDir);
+        List<ArtifactCache.Entry> evicted = cache.prune(maxSize);
+        for (ArtifactCache.Entry entry : evicted) {
+            System.out.println("evicted " + entry);
+        }
+        System.out.println(evicted.size() + " archives evicted, " + cache.size() + " bytes left");
+    }
+}
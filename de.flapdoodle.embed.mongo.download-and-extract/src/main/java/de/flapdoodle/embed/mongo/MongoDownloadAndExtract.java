@@ -3,75 +3,207 @@ package de.flapdoodle.embed.mongo;
 import de.flapdoodle.embed.mongo.config.*;
 import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
 import de.flapdoodle.embed.mongo.distribution.Version;
-import de.flapdoodle.embed.process.config.IRuntimeConfig;
-import de.flapdoodle.embed.process.config.io.ProcessOutput;
 import de.flapdoodle.embed.process.config.store.IDownloadConfig;
 import de.flapdoodle.embed.process.config.store.ITimeoutConfig;
 import de.flapdoodle.embed.process.config.store.TimeoutConfigBuilder;
-import de.flapdoodle.embed.process.io.IStreamProcessor;
-import de.flapdoodle.embed.process.io.Processors;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.extract.IExtractedFileSet;
 import de.flapdoodle.embed.process.io.directories.FixedPath;
-import de.flapdoodle.embed.process.runtime.ICommandLinePostProcessor;
 import de.flapdoodle.embed.process.store.IArtifactStore;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 import static de.flapdoodle.embed.mongo.Command.MongoD;
 
+/**
+ * Downloads and extracts mongodb artifacts into a cache dir, e.g. to bake them into a ci image.
+ *
+ * <pre>
+ * &lt;cacheDir&gt; &lt;version&gt;... [--commands mongod,mongos,...] [--parallel n]
+ * </pre>
+ *
+ * A version is a version number (3.4.2), a glob on version numbers (3.4.*) or a
+ * {@link Version.Main} alias (PRODUCTION, V3_4).
+ */
 public class MongoDownloadAndExtract {
 
+    private static final int DEFAULT_PARALLEL = 4;
+
+    private static final String USAGE = "usage: <cacheDir> <version>... [--commands mongod,mongos,...] [--parallel n]";
+
     public static void main(String[] args) throws IOException {
+        Arguments arguments;
+        try {
+            arguments = Arguments.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
 
         MongoDownloadAndExtract mongoDownloadAndExtract = new MongoDownloadAndExtract();
-        String cacheDir = args[0];
-        String dbVersion = args[1];
-        mongoDownloadAndExtract.downloadArtifactAndExtract(cacheDir, dbVersion);
+        List<Result> results = mongoDownloadAndExtract.downloadArtifactsAndExtract(arguments.cacheDir,
+                arguments.versions, arguments.commands, arguments.parallel);
+        printReport(results);
+        for (Result result : results) {
+            if (result.failure != null) {
+                System.exit(1);
+            }
+        }
     }
 
     public void downloadArtifactAndExtract(String cacheDir,
                                            String dbVersion) throws IOException {
 
-        IDownloadConfig downloadConfig = buildDownloadConfig(cacheDir);
-        IMongodConfig mongoConfig = buildMongodConfig(resolveVersion(dbVersion));
+        for (Result result : downloadArtifactsAndExtract(cacheDir, Collections.singletonList(dbVersion),
+                Collections.singletonList(MongoD), 1)) {
+            if (result.failure != null) {
+                throw new IOException("could not download " + result, result.failure);
+            }
+        }
+
+        System.out.println("Done");
+    }
+
+    /**
+     * downloads and extracts every command of every version with at most parallel downloads at once
+     */
+    public List<Result> downloadArtifactsAndExtract(String cacheDir,
+                                                    List<String> versions,
+                                                    List<Command> commands,
+                                                    int parallel) throws IOException {
+
+        Set<IFeatureAwareVersion> resolved = new LinkedHashSet<>();
+        for (String version : versions) {
+            resolved.addAll(resolveVersions(version));
+        }
 
-        OutputBufferProcessor outputBuffer = new OutputBufferProcessor();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallel));
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (IFeatureAwareVersion version : resolved) {
+                for (Command command : commands) {
+                    futures.add(executor.submit(() -> downloadAndExtract(cacheDir, version, command)));
+                }
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-        IRuntimeConfig runtimeConfig = buildRuntimeConfig(outputBuffer, downloadConfig);
-        MongodStarter runtime = MongodStarter.getInstance(runtimeConfig);
+    private Result downloadAndExtract(String cacheDir, IFeatureAwareVersion version, Command command) {
+        long start = System.currentTimeMillis();
+        try {
+            IDownloadConfig downloadConfig = buildDownloadConfig(cacheDir, command);
+            IArtifactStore artifactStore = buildArtifactStore(downloadConfig, command);
+            Distribution distribution = Distribution.detectFor(version);
 
-        runtime.prepare(mongoConfig);
+            artifactStore.checkDistribution(distribution);
+            IExtractedFileSet files = artifactStore.extractFileSet(distribution);
+            artifactStore.removeFileSet(distribution, files);
 
-        System.out.println("Done");
+            File archive = new File(downloadConfig.getArtifactStorePath().asFile(),
+                    downloadConfig.getPackageResolver().getPath(distribution));
+            return new Result(version, command, System.currentTimeMillis() - start, archive.length(), null);
+        } catch (IOException | RuntimeException e) {
+            return new Result(version, command, System.currentTimeMillis() - start, 0, e);
+        }
+    }
+
+    static List<IFeatureAwareVersion> resolveVersions(final String dbVersion) {
+        for (Version.Main main : Version.Main.values()) {
+            if (main.name().equalsIgnoreCase(dbVersion)) {
+                return Collections.<IFeatureAwareVersion>singletonList(main);
+            }
+        }
+        if (dbVersion.contains("*") || dbVersion.contains("?")) {
+            Pattern glob = Pattern.compile(dbVersion.replace(".", "\\.").replace("*", ".*").replace("?", "."));
+            List<IFeatureAwareVersion> ret = new ArrayList<>();
+            for (Version version : Version.values()) {
+                if (glob.matcher(version.asInDownloadPath()).matches()) {
+                    ret.add(version);
+                }
+            }
+            if (ret.isEmpty()) {
+                throw new IllegalArgumentException("no version matches " + dbVersion);
+            }
+            return ret;
+        }
+        return Collections.<IFeatureAwareVersion>singletonList(resolveVersion(dbVersion));
     }
 
-    private Version resolveVersion(final String dbVersion) {
+    private static Version resolveVersion(final String dbVersion) {
         String versionStr = "V" + dbVersion.replace('.', '_');
-        return Version.valueOf(versionStr);
+        try {
+            return Version.valueOf(versionStr);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown version " + dbVersion);
+        }
     }
 
-    private IRuntimeConfig buildRuntimeConfig(IStreamProcessor outputBuffer,
-                                              IDownloadConfig downloadConfig) {
+    static List<Command> resolveCommands(String commands) {
+        List<Command> ret = new ArrayList<>();
+        for (String name : commands.split(",")) {
+            Command found = null;
+            for (Command command : Command.values()) {
+                if (command.commandName().equalsIgnoreCase(name.trim()) || command.name().equalsIgnoreCase(name.trim())) {
+                    found = command;
+                }
+            }
+            if (found == null) {
+                throw new IllegalArgumentException("unknown command " + name);
+            }
+            ret.add(found);
+        }
+        return ret;
+    }
 
-        return new RuntimeConfigBuilder()
-                .processOutput(new ProcessOutput(outputBuffer, outputBuffer, Processors.silent()))
-                .commandLinePostProcessor(new ICommandLinePostProcessor.Noop())
-                .artifactStore(buildArtifactStore(downloadConfig))
-                .build();
+    private static void printReport(List<Result> results) {
+        long totalBytes = 0;
+        System.out.println(String.format("%-12s %-14s %10s %14s  %s", "version", "command", "ms", "bytes", "result"));
+        for (Result result : results) {
+            System.out.println(String.format("%-12s %-14s %10d %14d  %s", result.version.asInDownloadPath(),
+                    result.command.commandName(), result.durationInMs, result.bytes,
+                    result.failure == null ? "ok" : "FAILED: " + result.failure.getMessage()));
+            totalBytes += result.bytes;
+        }
+        System.out.println(results.size() + " artifacts, " + totalBytes + " bytes");
     }
 
-    private IArtifactStore buildArtifactStore(IDownloadConfig downloadConfig) {
+    private IArtifactStore buildArtifactStore(IDownloadConfig downloadConfig, Command command) {
         return new ExtractedArtifactStoreBuilder()
-                .defaults(MongoD)
+                .defaults(command)
                 .download(downloadConfig)
                 .extractDir(downloadConfig.getArtifactStorePath())
                 .build();
     }
 
 
-    private IDownloadConfig buildDownloadConfig(String cacheDir) {
-        System.out.println("cacheDir: " + cacheDir);
+    private IDownloadConfig buildDownloadConfig(String cacheDir, Command command) {
         return new DownloadConfigBuilder()
-                .defaultsForCommand(MongoD)
+                .defaultsForCommand(command)
                 .timeoutConfig(buildTimeoutConfig())
                 .artifactStorePath(new FixedPath(cacheDir))
                 .build();
@@ -84,37 +216,90 @@ public class MongoDownloadAndExtract {
                 .build();
     }
 
-    private IMongodConfig buildMongodConfig(IFeatureAwareVersion version) throws IOException {
-        return new MongodConfigBuilder()
-                .version(version)
-                .build();
-    }
+    static class Arguments {
 
-    class OutputBufferProcessor implements IStreamProcessor {
+        final String cacheDir;
+        final List<String> versions;
+        final List<Command> commands;
+        final int parallel;
+
+        private Arguments(String cacheDir, List<String> versions, List<Command> commands, int parallel) {
+            this.cacheDir = cacheDir;
+            this.versions = versions;
+            this.commands = commands;
+            this.parallel = parallel;
+        }
 
-        int capacity;
+        /**
+         * @throws IllegalArgumentException on missing versions, unknown options or bad option values
+         */
+        static Arguments parse(String... args) {
+            if (args.length < 2) {
+                throw new IllegalArgumentException("cache dir and at least one version expected");
+            }
+            List<String> versions = new ArrayList<>();
+            List<Command> commands = Collections.singletonList(MongoD);
+            int parallel = DEFAULT_PARALLEL;
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--commands")) {
+                    commands = resolveCommands(optionValue(args, ++i, "--commands"));
+                } else if (args[i].equals("--parallel")) {
+                    parallel = parsePositive(optionValue(args, ++i, "--parallel"), "--parallel");
+                } else if (args[i].startsWith("--")) {
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+                } else {
+                    versions.add(args[i]);
+                }
+            }
+            if (versions.isEmpty()) {
+                throw new IllegalArgumentException("at least one version expected");
+            }
+            return new Arguments(args[0], versions, commands, parallel);
+        }
 
-        public OutputBufferProcessor(int capacity) {
-            this.capacity = capacity;
+        private static String optionValue(String[] args, int index, String option) {
+            if (index >= args.length) {
+                throw new IllegalArgumentException(option + " needs a value");
+            }
+            return args[index];
         }
 
-        public OutputBufferProcessor(){
-            this(4096);
+        private static int parsePositive(String value, String option) {
+            try {
+                int ret = Integer.parseInt(value);
+                if (ret > 0) {
+                    return ret;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            throw new IllegalArgumentException(option + " needs a positive number, got " + value);
         }
+    }
 
-        private StringBuilder blocks = new java.lang.StringBuilder(capacity);
+    public static class Result {
 
-        public void process(String block) {
-            blocks.append(block);
+        final IFeatureAwareVersion version;
+        final Command command;
+        final long durationInMs;
+        final long bytes;
+        final Exception failure;
+
+        Result(IFeatureAwareVersion version, Command command, long durationInMs, long bytes, Exception failure) {
+            this.version = version;
+            this.command = command;
+            this.durationInMs = durationInMs;
+            this.bytes = bytes;
+            this.failure = failure;
         }
 
-        public void onProcessed() {
-            blocks.trimToSize();
+        public Exception failure() {
+            return failure;
         }
 
+        @Override
         public String toString() {
-            return blocks.toString();
+            return command.commandName() + " " + version.asInDownloadPath();
         }
-
     }
 }
@@ -0,0 +1,96 @@
+package de.flapdoodle.embed.mongo
+
+import de.flapdoodle.embed.mongo.Command.{MongoD, MongoDump, MongoS}
+import de.flapdoodle.embed.mongo.MongoDownloadAndExtract.{Arguments, resolveCommands, resolveVersions}
+import de.flapdoodle.embed.mongo.distribution.{IFeatureAwareVersion, Version}
+import org.specs2.matcher.Matchers
+import org.specs2.mutable.SpecWithJUnit
+
+import scala.collection.JavaConverters._
+
+class MongoDownloadAndExtractTest extends SpecWithJUnit
+                                     with Matchers {
+
+    "resolveVersions" should {
+
+        "resolve a version number" in {
+            versions("3.4.3") must_== List(Version.V3_4_3)
+        }
+
+        "resolve Main aliases ignoring case" in {
+            versions("PRODUCTION") must_== List(Version.Main.PRODUCTION)
+            versions("v3_4") must_== List(Version.Main.V3_4)
+        }
+
+        "resolve a glob to every matching version" in {
+            versions("3.2.*") must_== List(Version.V3_2_0, Version.V3_2_1_RC3, Version.V3_2_1)
+            versions("3.2.?") must_== List(Version.V3_2_0, Version.V3_2_1)
+        }
+
+        "reject an unknown version" in {
+            versions("1.2.3") must throwA(new IllegalArgumentException("unknown version 1.2.3"))
+        }
+
+        "reject a glob without a match" in {
+            versions("9.9.*") must throwA(new IllegalArgumentException("no version matches 9.9.*"))
+        }
+    }
+
+    "resolveCommands" should {
+
+        "resolve command and enum names ignoring case" in {
+            resolveCommands("mongod, MongoS,MONGODUMP").asScala.toList must_== List(MongoD, MongoS, MongoDump)
+        }
+
+        "reject an unknown command" in {
+            resolveCommands("mongod,bogus") must throwA(new IllegalArgumentException("unknown command bogus"))
+        }
+    }
+
+    "Arguments" should {
+
+        "default to mongod with the default parallelism" in {
+            val arguments = Arguments.parse("/cache", "3.4.3")
+
+            arguments.cacheDir must_== "/cache"
+            arguments.versions.asScala.toList must_== List("3.4.3")
+            arguments.commands.asScala.toList must_== List(MongoD)
+            arguments.parallel must_== 4
+        }
+
+        "read --commands and --parallel between versions" in {
+            val arguments = Arguments.parse("/cache", "3.4.3", "--commands", "mongod,mongos", "--parallel", "2", "PRODUCTION")
+
+            arguments.versions.asScala.toList must_== List("3.4.3", "PRODUCTION")
+            arguments.commands.asScala.toList must_== List(MongoD, MongoS)
+            arguments.parallel must_== 2
+        }
+
+        "reject missing versions" in {
+            Arguments.parse("/cache") must throwA[IllegalArgumentException]
+            Arguments.parse("/cache", "--parallel", "2") must
+                    throwA(new IllegalArgumentException("at least one version expected"))
+        }
+
+        "reject an option without a value" in {
+            Arguments.parse("/cache", "3.4.3", "--commands") must
+                    throwA(new IllegalArgumentException("--commands needs a value"))
+            Arguments.parse("/cache", "3.4.3", "--parallel") must
+                    throwA(new IllegalArgumentException("--parallel needs a value"))
+        }
+
+        "reject a parallelism that is not a positive number" in {
+            Arguments.parse("/cache", "3.4.3", "--parallel", "x") must
+                    throwA(new IllegalArgumentException("--parallel needs a positive number, got x"))
+            Arguments.parse("/cache", "3.4.3", "--parallel", "0") must
+                    throwA(new IllegalArgumentException("--parallel needs a positive number, got 0"))
+        }
+
+        "reject unknown options" in {
+            Arguments.parse("/cache", "3.4.3", "--verbose") must
+                    throwA(new IllegalArgumentException("unknown option --verbose"))
+        }
+    }
+
+    private def versions(version: String): List[IFeatureAwareVersion] = resolveVersions(version).asScala.toList
+}
@@ -24,16 +24,27 @@ import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongPredicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.flapdoodle.embed.mongo.config.IMongoConfig;
+import de.flapdoodle.embed.mongo.runtime.IReadinessCheck;
 import de.flapdoodle.embed.mongo.runtime.Mongod;
+import de.flapdoodle.embed.mongo.runtime.PortAlreadyInUseException;
+import de.flapdoodle.embed.mongo.runtime.ReadinessChecks;
+import de.flapdoodle.embed.mongo.runtime.StartupLogWatch;
+import de.flapdoodle.embed.mongo.runtime.StartupTimings;
+import de.flapdoodle.embed.mongo.runtime.StartupTimings.Phase;
 import de.flapdoodle.embed.process.config.IRuntimeConfig;
 import de.flapdoodle.embed.process.config.io.ProcessOutput;
 import de.flapdoodle.embed.process.distribution.Distribution;
-import de.flapdoodle.embed.process.io.LogWatchStreamProcessor;
 import de.flapdoodle.embed.process.io.Processors;
 import de.flapdoodle.embed.process.io.StreamToLineProcessor;
 import de.flapdoodle.embed.process.runtime.AbstractProcess;
@@ -46,23 +57,64 @@ public abstract class AbstractMongoProcess<T extends IMongoConfig, E extends Exe
 
 	private static Logger logger = LoggerFactory.getLogger(AbstractMongoProcess.class);
 	
+	static final String ADDRESS_IN_USE = "Address already in use";
+
 	boolean stopped=false;
+
+	// assigned from within the super constructor, so no field initializer here
+	private ProcessControl process;
+	private CompletableFuture<Integer> exit;
+	private StartupTimings.Recorder timings;
+	private StartupTimings startupTimings;
+	private volatile boolean stoppedCleanly;
 	
 	public AbstractMongoProcess(Distribution distribution, T config, IRuntimeConfig runtimeConfig, E executable)
 			throws IOException {
 		super(distribution, config, runtimeConfig, executable);
 	}
 
+	@Override
+	protected void onBeforeProcess(IRuntimeConfig runtimeConfig) throws IOException {
+		timings = new StartupTimings.Recorder(getClass().getSimpleName());
+		super.onBeforeProcess(runtimeConfig);
+	}
+
+	@Override
+	protected void onBeforeProcessStart(ProcessBuilder processBuilder, T config, IRuntimeConfig runtimeConfig) {
+		super.onBeforeProcessStart(processBuilder, config, runtimeConfig);
+		phaseDone(Phase.BEFORE_START);
+	}
+
+	/**
+	 * ends a startup phase, it started where the last phase ended
+	 */
+	protected final void phaseDone(Phase phase) {
+		timings.done(phase);
+	}
+
+	/**
+	 * @return durations of the startup phases of this process
+	 */
+	public StartupTimings getStartupTimings() {
+		return startupTimings;
+	}
+
 	@Override
 	protected final void onAfterProcessStart(ProcessControl process, IRuntimeConfig runtimeConfig) throws IOException {
+		phaseDone(Phase.SPAWN);
+		this.process = process;
 		ProcessOutput outputConfig = runtimeConfig.getProcessOutput();
-		LogWatchStreamProcessor logWatch = new LogWatchStreamProcessor(successMessage(), knownFailureMessages(),
-				StreamToLineProcessor.wrap(outputConfig.getOutput()));
-		Processors.connect(process.getReader(), logWatch);
+		StartupLogWatch logWatch = new StartupLogWatch(successMessage(), knownFailureMessages(), Mongod.PROCESS_ID_PATTERN,
+				StartupLogWatch.DEFAULT_MAX_OUTPUT_SIZE, StreamToLineProcessor.wrap(outputConfig.getOutput()));
+		Processors.connect(process.getReader(), StreamToLineProcessor.wrap(logWatch));
 		Processors.connect(process.getError(), StreamToLineProcessor.wrap(outputConfig.getError()));
-		logWatch.waitForResult(getConfig().timeout().getStartupTimeout());
-		if (logWatch.isInitWithSuccess()) {
-			setProcessId(Mongod.getMongodProcessId(logWatch.getOutput(), -1));
+		boolean ready = readinessCheck().waitForReadiness(getConfig().net(), logWatch, getConfig().timeout().getStartupTimeout());
+		phaseDone(Phase.READINESS);
+		startupTimings = timings.build(ready);
+		StartupTimings.publish(startupTimings);
+		if (ready) {
+			setProcessId(logWatch.getProcessId(-1));
+			logWatch.discardOutput();
 		} else {
 			String failureFound = logWatch.getFailureFound();
 			if (failureFound==null) {
@@ -71,11 +123,16 @@ public abstract class AbstractMongoProcess<T extends IMongoConfig, E extends Exe
 						"Hmm.. no failure message.. \n" +
 						"...the cause must be somewhere in the process output\n" +
 						"----------------------\n" +
-						""+logWatch.getOutput();
+						(logWatch.isOutputTruncated() ? "...\n" : "") +
+						logWatch.getOutput();
 			}
+			logWatch.discardOutput();
 			try {
 				// Process could be finished with success here! In this case no need to throw an exception!
 				if(process.waitFor() != 0){
+					if (failureFound.contains(ADDRESS_IN_USE)) {
+						throw new PortAlreadyInUseException(getConfig().net().getPort(), "Could not start process: "+failureFound);
+					}
 					throw new IOException("Could not start process: "+failureFound);
 				}
 			} catch (InterruptedException e) {
@@ -84,6 +141,10 @@ public abstract class AbstractMongoProcess<T extends IMongoConfig, E extends Exe
 		}
 	}
 
+	protected IReadinessCheck readinessCheck() {
+		return ReadinessChecks.logMessage();
+	}
+
 	protected String successMessage() {
 		return "waiting for connections on port";
 	}
@@ -93,6 +154,7 @@ public abstract class AbstractMongoProcess<T extends IMongoConfig, E extends Exe
 		ret.add("failed errno");
 		ret.add("ERROR:");
 		ret.add("error command line");
+		ret.add(ADDRESS_IN_USE);
 		return ret;
 	}
 
@@ -104,7 +166,10 @@ public abstract class AbstractMongoProcess<T extends IMongoConfig, E extends Exe
 				stopped = true;
 
 				logger.debug("try to stop mongod");
-				if (!sendStopToMongoInstance()) {
+				long shutdownTimeout = getConfig().timeout().getShutdownTimeout();
+				if (shutdownTimeout > 0 && process != null) {
+					stopAndWaitForExit(shutdownTimeout);
+				} else if (!sendStopToMongoInstance()) {
 					logger.warn("could not stop mongod with db command, try next");
 					if (!sendKillToProcess()) {
 						logger.warn("could not stop mongod, try next");
@@ -118,6 +183,81 @@ public abstract class AbstractMongoProcess<T extends IMongoConfig, E extends Exe
 			}
 		}
 	}
+
+	/**
+	 * sends the shutdown command and only escalates to kill if the process
+	 * did not exit within the timeout
+	 */
+	private void stopAndWaitForExit(long timeoutInMs) {
+		stoppedCleanly = stopAndWaitForExit(timeoutInMs, this::sendShutdownCommandToMongoInstance, this::sendKillToProcess,
+				this::tryKillToProcess, this::waitForExit);
+	}
+
+	/**
+	 * every step is followed by a wait for the process exit, the next step only
+	 * runs if the process is still there
+	 *
+	 * @return true if the process exited after the shutdown command
+	 */
+	static boolean stopAndWaitForExit(long timeoutInMs, BooleanSupplier shutdown, BooleanSupplier kill,
+			BooleanSupplier hardKill, LongPredicate exitedWithin) {
+		if (shutdown.getAsBoolean() && exitedWithin.test(timeoutInMs)) {
+			return true;
+		}
+		logger.warn("mongod did not exit after shutdown command within {}ms, try next", timeoutInMs);
+		if (kill.getAsBoolean() && exitedWithin.test(timeoutInMs)) {
+			return false;
+		}
+		logger.warn("mongod did not exit after kill within {}ms, try next", timeoutInMs);
+		if (!hardKill.getAsBoolean()) {
+			logger.warn("could not stop mongod the second time, try one last thing");
+		}
+		if (!exitedWithin.test(timeoutInMs)) {
+			logger.warn("mongod is still running {}ms after the last kill", timeoutInMs);
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the process exited after the shutdown command, so its db
+	 *         files are consistent. Only known with a shutdown timeout, see
+	 *         {@link de.flapdoodle.embed.mongo.config.Timeout}.
+	 */
+	public boolean isStoppedCleanly() {
+		return stoppedCleanly;
+	}
+
+	private boolean waitForExit(long timeoutInMs) {
+		if (exit == null) {
+			exit = onExit(process);
+		}
+		try {
+			exit.get(timeoutInMs, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (TimeoutException e) {
+			return false;
+		} catch (ExecutionException e) {
+			logger.warn("waiting for process exit failed", e);
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static CompletableFuture<Integer> onExit(ProcessControl process) {
+		CompletableFuture<Integer> ret = new CompletableFuture<>();
+		Thread watcher = new Thread(() -> {
+			try {
+				ret.complete(process.waitFor());
+			} catch (InterruptedException e) {
+				ret.completeExceptionally(e);
+			}
+		}, "process exit watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+		return ret;
+	}
 	
 	@Override
 	protected void cleanupInternal() {
@@ -128,6 +268,15 @@ public abstract class AbstractMongoProcess<T extends IMongoConfig, E extends Exe
 
 	}
 
+	protected final boolean sendShutdownCommandToMongoInstance() {
+		try {
+			return Mongod.sendShutdownCommand(getConfig().net().getServerAddress(), getConfig().net().getPort());
+		} catch (UnknownHostException e) {
+			logger.error("sendShutdownCommand", e);
+		}
+		return false;
+	}
+
 	protected final boolean sendStopToMongoInstance() {
 		try {
 			return Mongod.sendShutdown(getConfig().net().getServerAddress(), getConfig().net().getPort());
@@ -22,8 +22,11 @@
 package de.flapdoodle.embed.mongo;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import de.flapdoodle.embed.mongo.config.IMongoDumpConfig;
+import de.flapdoodle.embed.mongo.runtime.AsyncStart;
 import de.flapdoodle.embed.process.config.IRuntimeConfig;
 import de.flapdoodle.embed.process.distribution.Distribution;
 import de.flapdoodle.embed.process.extract.IExtractedFileSet;
@@ -40,4 +43,15 @@ public class MongoDumpExecutable extends Executable<IMongoDumpConfig, MongoDumpP
             throws IOException {
         return new MongoDumpProcess(distribution, config, runtime, this);
     }
+
+    /**
+     * starts the process on a daemon thread, the future completes once it is ready
+     */
+    public CompletableFuture<MongoDumpProcess> startAsync() {
+        return AsyncStart.startProcess(() -> start());
+    }
+
+    public CompletableFuture<MongoDumpProcess> startAsync(Executor executor) {
+        return AsyncStart.startProcess(() -> start(), executor);
+    }
 }
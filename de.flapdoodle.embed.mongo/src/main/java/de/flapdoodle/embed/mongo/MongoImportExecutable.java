@@ -22,8 +22,11 @@
 package de.flapdoodle.embed.mongo;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import de.flapdoodle.embed.mongo.config.IMongoImportConfig;
+import de.flapdoodle.embed.mongo.runtime.AsyncStart;
 import de.flapdoodle.embed.process.config.IRuntimeConfig;
 import de.flapdoodle.embed.process.distribution.Distribution;
 import de.flapdoodle.embed.process.extract.IExtractedFileSet;
@@ -43,4 +46,15 @@ public class MongoImportExecutable extends Executable<IMongoImportConfig, MongoI
             throws IOException {
         return new MongoImportProcess(distribution, config, runtime, this);
     }
+
+    /**
+     * starts the process on a daemon thread, the future completes once it is ready
+     */
+    public CompletableFuture<MongoImportProcess> startAsync() {
+        return AsyncStart.startProcess(() -> start());
+    }
+
+    public CompletableFuture<MongoImportProcess> startAsync(Executor executor) {
+        return AsyncStart.startProcess(() -> start(), executor);
+    }
 }
@@ -22,8 +22,11 @@
 package de.flapdoodle.embed.mongo;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import de.flapdoodle.embed.mongo.config.IMongoRestoreConfig;
+import de.flapdoodle.embed.mongo.runtime.AsyncStart;
 import de.flapdoodle.embed.process.config.IRuntimeConfig;
 import de.flapdoodle.embed.process.distribution.Distribution;
 import de.flapdoodle.embed.process.extract.IExtractedFileSet;
@@ -40,4 +43,15 @@ public class MongoRestoreExecutable extends Executable<IMongoRestoreConfig, Mong
             throws IOException {
         return new MongoRestoreProcess(distribution, config, runtime, this);
     }
+
+    /**
+     * starts the process on a daemon thread, the future completes once it is ready
+     */
+    public CompletableFuture<MongoRestoreProcess> startAsync() {
+        return AsyncStart.startProcess(() -> start());
+    }
+
+    public CompletableFuture<MongoRestoreProcess> startAsync(Executor executor) {
+        return AsyncStart.startProcess(() -> start(), executor);
+    }
 }
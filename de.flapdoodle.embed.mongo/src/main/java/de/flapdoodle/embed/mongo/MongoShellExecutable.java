@@ -21,8 +21,11 @@
 package de.flapdoodle.embed.mongo;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import de.flapdoodle.embed.mongo.config.IMongoShellConfig;
+import de.flapdoodle.embed.mongo.runtime.AsyncStart;
 import de.flapdoodle.embed.process.config.IRuntimeConfig;
 import de.flapdoodle.embed.process.distribution.Distribution;
 import de.flapdoodle.embed.process.extract.IExtractedFileSet;
@@ -46,4 +49,15 @@ public class MongoShellExecutable extends Executable<IMongoShellConfig, MongoShe
 	
 	
 
+	/**
+	 * starts the process on a daemon thread, the future completes once it is ready
+	 */
+	public CompletableFuture<MongoShellProcess> startAsync() {
+		return AsyncStart.startProcess(() -> start());
+	}
+
+	public CompletableFuture<MongoShellProcess> startAsync(Executor executor) {
+		return AsyncStart.startProcess(() -> start(), executor);
+	}
+
 }
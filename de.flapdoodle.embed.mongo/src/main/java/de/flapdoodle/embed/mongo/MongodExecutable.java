@@ -21,8 +21,11 @@
 package de.flapdoodle.embed.mongo;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import de.flapdoodle.embed.mongo.config.IMongodConfig;
+import de.flapdoodle.embed.mongo.runtime.AsyncStart;
 import de.flapdoodle.embed.process.config.IRuntimeConfig;
 import de.flapdoodle.embed.process.distribution.Distribution;
 import de.flapdoodle.embed.process.extract.IExtractedFileSet;
@@ -44,4 +47,15 @@ public class MongodExecutable extends Executable<IMongodConfig, MongodProcess> {
 		return new MongodProcess(distribution, config, runtime, this);
 	}
 
+	/**
+	 * starts the process on a daemon thread, the future completes once it is ready
+	 */
+	public CompletableFuture<MongodProcess> startAsync() {
+		return AsyncStart.startProcess(() -> start());
+	}
+
+	public CompletableFuture<MongodProcess> startAsync(Executor executor) {
+		return AsyncStart.startProcess(() -> start(), executor);
+	}
+
 }
@@ -28,10 +28,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.flapdoodle.embed.mongo.config.IMongodConfig;
+import de.flapdoodle.embed.mongo.runtime.IReadinessCheck;
 import de.flapdoodle.embed.mongo.runtime.Mongod;
+import de.flapdoodle.embed.mongo.runtime.StartupTimings.Phase;
 import de.flapdoodle.embed.process.config.IRuntimeConfig;
 import de.flapdoodle.embed.process.distribution.Distribution;
 import de.flapdoodle.embed.process.extract.IExtractedFileSet;
+import de.flapdoodle.embed.process.io.directories.IDirectory;
 import de.flapdoodle.embed.process.io.directories.PropertyOrPlatformTempDir;
 import de.flapdoodle.embed.process.io.file.Files;
 
@@ -61,10 +64,14 @@ public class MongodProcess extends AbstractMongoProcess<IMongodConfig, MongodExe
 		if (config.replication().getDatabaseDir() != null) {
 			tmpDbDir = Files.createOrCheckDir(config.replication().getDatabaseDir());
 		} else {
-			tmpDbDir = Files.createTempDir(PropertyOrPlatformTempDir.defaultInstance(),"embedmongo-db");
+			IDirectory tempDir = config.replication().getTempDir() != null
+					? config.replication().getTempDir()
+					: PropertyOrPlatformTempDir.defaultInstance();
+			tmpDbDir = Files.createTempDir(tempDir,"embedmongo-db");
 			dbDirIsTemp = true;
 		}
 		this.dbDir = tmpDbDir;
+		phaseDone(Phase.DB_DIR);
 	}
 	
 	@Override
@@ -80,6 +87,11 @@ public class MongodProcess extends AbstractMongoProcess<IMongodConfig, MongodExe
 	}
 
 
+	@Override
+	protected IReadinessCheck readinessCheck() {
+		return getConfig().readinessCheck();
+	}
+
 	@Override
 	protected List<String> getCommandLine(Distribution distribution, IMongodConfig config, IExtractedFileSet files) throws IOException {
 		return Mongod.enhanceCommandLinePlattformSpecific(distribution, Mongod.getCommandLine(getConfig(), files, dbDir));
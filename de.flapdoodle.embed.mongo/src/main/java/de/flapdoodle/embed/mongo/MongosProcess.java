@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.util.List;
 
 import de.flapdoodle.embed.mongo.config.IMongosConfig;
+import de.flapdoodle.embed.mongo.runtime.IReadinessCheck;
 import de.flapdoodle.embed.mongo.runtime.Mongos;
 import de.flapdoodle.embed.process.config.IRuntimeConfig;
 import de.flapdoodle.embed.process.distribution.Distribution;
@@ -39,6 +40,11 @@ public class MongosProcess extends AbstractMongoProcess<IMongosConfig, MongosExe
 		super(distribution, config, runtimeConfig, mongosExecutable);
 	}
 
+	@Override
+	protected IReadinessCheck readinessCheck() {
+		return getConfig().readinessCheck();
+	}
+
 	@Override
 	protected List<String> getCommandLine(Distribution distribution, IMongosConfig config, IExtractedFileSet files)
 			throws IOException {
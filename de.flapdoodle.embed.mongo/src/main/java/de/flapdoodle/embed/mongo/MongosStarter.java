@@ -20,8 +20,13 @@
  */
 package de.flapdoodle.embed.mongo;
 
+import java.util.concurrent.CompletableFuture;
+
 import de.flapdoodle.embed.mongo.config.IMongosConfig;
 import de.flapdoodle.embed.mongo.config.RuntimeConfigBuilder;
+import de.flapdoodle.embed.mongo.runtime.AsyncStart;
+import de.flapdoodle.embed.mongo.runtime.StartupTimings;
+import de.flapdoodle.embed.mongo.runtime.StartupTimings.Phase;
 import de.flapdoodle.embed.process.config.IRuntimeConfig;
 import de.flapdoodle.embed.process.distribution.Distribution;
 import de.flapdoodle.embed.process.extract.IExtractedFileSet;
@@ -48,4 +53,26 @@ public class MongosStarter extends Starter<IMongosConfig,MongosExecutable,Mongos
 	protected MongosExecutable newExecutable(IMongosConfig mongosConfig, Distribution distribution, IRuntimeConfig runtime, IExtractedFileSet files) {
 		return new MongosExecutable(distribution, mongosConfig, runtime, files);
 	}
+
+	/**
+	 * reports the time for artifact lookup and extraction as
+	 * {@link Phase#ARTIFACT} to the startup timing listeners
+	 */
+	@Override
+	public MongosExecutable prepare(IMongosConfig config, Distribution distribution) {
+		StartupTimings.Recorder timings = new StartupTimings.Recorder(getClass().getSimpleName());
+		MongosExecutable ret = super.prepare(config, distribution);
+		timings.done(Phase.ARTIFACT);
+		StartupTimings.publish(timings.build(true));
+		return ret;
+	}
+
+	/**
+	 * extracts the artifact and starts the process on a daemon thread, so several
+	 * extractions and process starts can overlap. The executable is stopped if
+	 * the start fails or the future was cancelled.
+	 */
+	public CompletableFuture<MongosProcess> prepareAndStartAsync(IMongosConfig config) {
+		return AsyncStart.prepareAndStart(() -> prepare(config), MongosExecutable::start, MongosExecutable::stop);
+	}
 }
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.net.UnknownHostException;
 
 import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
+import de.flapdoodle.embed.mongo.runtime.IReadinessCheck;
 import de.flapdoodle.embed.process.builder.AbstractBuilder;
 import de.flapdoodle.embed.process.builder.IProperty;
 import de.flapdoodle.embed.process.builder.TypedProperty;
@@ -39,6 +40,7 @@ public abstract class AbstractMongoConfigBuilder<T extends IMongoConfig> extends
 	protected static final TypedProperty<String> USERNAME = TypedProperty.with("UserName", String.class);
 	protected static final TypedProperty<String> PASSWORD = TypedProperty.with("Password", String.class);
 	protected static final TypedProperty<String> DBNAME = TypedProperty.with("DbName", String.class);
+	protected static final TypedProperty<IReadinessCheck> READINESS_CHECK = TypedProperty.with("ReadinessCheck", IReadinessCheck.class);
 
 
 	public AbstractMongoConfigBuilder() throws UnknownHostException, IOException  {
@@ -82,6 +84,10 @@ public abstract class AbstractMongoConfigBuilder<T extends IMongoConfig> extends
 		return property(PID_FILE);
 	}
 
+	protected IProperty<IReadinessCheck> readinessCheck() {
+		return property(READINESS_CHECK);
+	}
+
 	static class ImmutableMongoConfig implements IMongoConfig {
 
 		private final ISupportConfig _supportConfig;
@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.flapdoodle.embed.process.config.store.IDownloadPath;
+import de.flapdoodle.embed.process.config.store.IPackageResolver;
+import de.flapdoodle.embed.process.config.store.IProxyFactory;
+import de.flapdoodle.embed.process.distribution.Distribution;
+
+/**
+ * Tries several download locations in order, e.g. an internal mirror, a
+ * file:// cache and the public host. The first two are raced: if the first
+ * does not answer within the hedge delay, the second is asked too and the
+ * first one that has the archive wins. All others are tried one after another.
+ *
+ * Probes run on their own daemon threads and go through the proxy of the
+ * download config. The winner for an archive is remembered for the lifetime of
+ * this instance, an archive that was found nowhere is probed again on the next
+ * call.
+ */
+public class ChainedDownloadPath implements IDownloadPath {
+
+	private static Logger logger = LoggerFactory.getLogger(ChainedDownloadPath.class);
+
+	public static final long DEFAULT_HEDGE_DELAY_IN_MS = 200;
+
+	private static final int PROBE_TIMEOUT_IN_MS = 5000;
+
+	private static final ExecutorService PROBES = Executors.newCachedThreadPool(new ProbeThreadFactory());
+
+	private final IPackageResolver packageResolver;
+	private final IProxyFactory proxyFactory;
+	private final long hedgeDelayInMs;
+	private final List<IDownloadPath> candidates;
+	private final Map<String, String> winners = new ConcurrentHashMap<>();
+
+	public ChainedDownloadPath(IPackageResolver packageResolver, IDownloadPath... candidates) {
+		this(packageResolver, DEFAULT_HEDGE_DELAY_IN_MS, Arrays.asList(candidates));
+	}
+
+	public ChainedDownloadPath(IPackageResolver packageResolver, long hedgeDelayInMs, List<IDownloadPath> candidates) {
+		this(packageResolver, () -> null, hedgeDelayInMs, candidates);
+	}
+
+	/**
+	 * @param proxyFactory asked for every probe, a null proxy means a direct
+	 *            connection
+	 */
+	public ChainedDownloadPath(IPackageResolver packageResolver, IProxyFactory proxyFactory, long hedgeDelayInMs,
+			List<IDownloadPath> candidates) {
+		if (candidates.isEmpty()) {
+			throw new IllegalArgumentException("no download path");
+		}
+		this.packageResolver = packageResolver;
+		this.proxyFactory = proxyFactory;
+		this.hedgeDelayInMs = hedgeDelayInMs;
+		this.candidates = new ArrayList<>(candidates);
+	}
+
+	@Override
+	public String getPath(Distribution distribution) {
+		String archive = packageResolver.getPath(distribution);
+		List<String> bases = new ArrayList<>();
+		for (IDownloadPath candidate : candidates) {
+			bases.add(candidate.getPath(distribution));
+		}
+		// no mapping for null, so an archive found nowhere is probed again
+		String ret = winners.computeIfAbsent(archive, a -> choose(bases, a));
+		if (ret == null) {
+			// let the downloader report the failure of the last resort
+			ret = bases.get(bases.size() - 1);
+			logger.warn("{} not found at any of {}, use {}", archive, bases, ret);
+		}
+		return ret;
+	}
+
+	private String choose(List<String> bases, String archive) {
+
+		String ret = null;
+		if (bases.size() > 1) {
+			ret = race(bases.get(0), bases.get(1), archive);
+		} else if (available(bases.get(0) + archive)) {
+			ret = bases.get(0);
+		}
+		for (int i = 2; ret == null && i < bases.size(); i++) {
+			if (available(bases.get(i) + archive)) {
+				ret = bases.get(i);
+			}
+		}
+		if (ret != null) {
+			logger.info("download {} from {}", archive, ret);
+		}
+		return ret;
+	}
+
+	private String race(final String first, final String second, final String archive) {
+		CompletableFuture<Boolean> firstProbe = CompletableFuture.supplyAsync(() -> available(first + archive), PROBES);
+		try {
+			return firstProbe.get(hedgeDelayInMs, TimeUnit.MILLISECONDS) ? first : (available(second + archive) ? second : null);
+		} catch (TimeoutException e) {
+			logger.debug("{} did not answer within {}ms, ask {} too", first, hedgeDelayInMs, second);
+		} catch (ExecutionException e) {
+			logger.debug("probe of {} failed", first, e);
+			return available(second + archive) ? second : null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+
+		CompletableFuture<Boolean> secondProbe = CompletableFuture.supplyAsync(() -> available(second + archive), PROBES);
+		CompletableFuture<String> winner = new CompletableFuture<>();
+		firstProbe.thenAccept(found -> {
+			if (found) {
+				winner.complete(first);
+			}
+		});
+		secondProbe.thenAccept(found -> {
+			if (found) {
+				winner.complete(second);
+			}
+		});
+		CompletableFuture.allOf(firstProbe, secondProbe).whenComplete((v, e) -> winner.complete(null));
+		try {
+			return winner.get();
+		} catch (ExecutionException e) {
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	private boolean available(String url) {
+		try {
+			if (url.startsWith("file:")) {
+				return new File(new URI(url)).isFile();
+			}
+			Proxy proxy = proxyFactory.createProxy();
+			URLConnection connection = proxy != null ? new URL(url).openConnection(proxy) : new URL(url).openConnection();
+			connection.setConnectTimeout(PROBE_TIMEOUT_IN_MS);
+			connection.setReadTimeout(PROBE_TIMEOUT_IN_MS);
+			if (connection instanceof HttpURLConnection) {
+				HttpURLConnection http = (HttpURLConnection) connection;
+				http.setRequestMethod("HEAD");
+				try {
+					return http.getResponseCode() == HttpURLConnection.HTTP_OK;
+				} finally {
+					http.disconnect();
+				}
+			}
+			connection.getInputStream().close();
+			return true;
+		} catch (IOException | URISyntaxException | IllegalArgumentException e) {
+			logger.debug("{} not available", url, e);
+			return false;
+		}
+	}
+
+	static class ProbeThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "embedmongo-probe-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -20,11 +20,16 @@
  */
 package de.flapdoodle.embed.mongo.config;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import de.flapdoodle.embed.mongo.Command;
 import de.flapdoodle.embed.mongo.Paths;
+import de.flapdoodle.embed.process.config.store.DownloadPath;
 import de.flapdoodle.embed.process.config.store.IDownloadPath;
+import de.flapdoodle.embed.process.config.store.IProxyFactory;
 import de.flapdoodle.embed.process.distribution.Distribution;
 import de.flapdoodle.embed.process.distribution.Platform;
 import de.flapdoodle.embed.process.extract.UUIDTempNaming;
@@ -37,8 +42,18 @@ public class DownloadConfigBuilder extends de.flapdoodle.embed.process.config.st
 
 	private final Optional<String> artifactDownloadLocationEnvironmentVariable;
 
+	static final String ARTIFACTS_ENVIRONMENT_VARIABLE = "EMBEDDED_MONGO_ARTIFACTS";
+
 	public DownloadConfigBuilder() {
-		this(Optional.ofNullable(System.getenv().get("EMBEDDED_MONGO_ARTIFACTS")));
+		this(Optional.ofNullable(System.getenv().get(ARTIFACTS_ENVIRONMENT_VARIABLE)));
+	}
+
+	/**
+	 * @return the artifact location from EMBEDDED_MONGO_ARTIFACTS, null if not set
+	 */
+	static File artifactDownloadLocationFromEnvironment() {
+		String location = System.getenv().get(ARTIFACTS_ENVIRONMENT_VARIABLE);
+		return location != null ? new File(location) : null;
 	}
 	
 	protected DownloadConfigBuilder(Optional<String> artifactDownloadLocationEnvironmentVariable) {
@@ -54,6 +69,25 @@ public class DownloadConfigBuilder extends de.flapdoodle.embed.process.config.st
 		return defaults().packageResolverForCommand(command);
 	}
 
+	/**
+	 * Tries the mirrors in order before the public download host, see
+	 * {@link ChainedDownloadPath}. A mirror is a base url like
+	 * http://mirror.local/mongodb/ or file:///var/cache/mongodb/ with the same
+	 * layout as the public host. Mirrors are probed through the configured proxy.
+	 */
+	public DownloadConfigBuilder downloadPathWithMirrors(Command command, String... mirrors) {
+		List<IDownloadPath> candidates = new ArrayList<>();
+		for (String mirror : mirrors) {
+			candidates.add(new DownloadPath(mirror));
+		}
+		candidates.add(new PlatformDependentDownloadPath());
+		// the proxy may be configured after this call
+		IProxyFactory proxy = () -> proxyFactory().get().createProxy();
+		downloadPath().overwriteDefault(new ChainedDownloadPath(new Paths(command), proxy,
+				ChainedDownloadPath.DEFAULT_HEDGE_DELAY_IN_MS, candidates));
+		return this;
+	}
+
 	public DownloadConfigBuilder defaults() {
 		fileNaming().setDefault(new UUIDTempNaming());
 		downloadPath().setDefault(new PlatformDependentDownloadPath());
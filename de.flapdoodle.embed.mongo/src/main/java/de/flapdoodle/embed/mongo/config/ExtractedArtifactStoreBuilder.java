@@ -20,15 +20,102 @@
  */
 package de.flapdoodle.embed.mongo.config;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 import de.flapdoodle.embed.mongo.Command;
+import de.flapdoodle.embed.mongo.Paths;
+import de.flapdoodle.embed.mongo.store.ArtifactBundle;
+import de.flapdoodle.embed.mongo.store.ArtifactCache;
+import de.flapdoodle.embed.mongo.store.BundleArtifactStore;
+import de.flapdoodle.embed.mongo.store.StreamingExtractedArtifactStore;
+import de.flapdoodle.embed.mongo.store.StreamingExtractedArtifactStore.ExecutableMode;
+import de.flapdoodle.embed.mongo.store.SynchronizedArtifactStore;
+import de.flapdoodle.embed.process.builder.TypedProperty;
+import de.flapdoodle.embed.process.config.store.IPackageResolver;
 import de.flapdoodle.embed.process.extract.NoopTempNaming;
 import de.flapdoodle.embed.process.extract.UUIDTempNaming;
 import de.flapdoodle.embed.process.io.directories.PropertyOrPlatformTempDir;
 import de.flapdoodle.embed.process.io.directories.UserHome;
 import de.flapdoodle.embed.process.store.Downloader;
+import de.flapdoodle.embed.process.store.IArtifactStore;
 
 public class ExtractedArtifactStoreBuilder extends de.flapdoodle.embed.process.store.ExtractedArtifactStoreBuilder {
 
+	protected static final TypedProperty<Boolean> SYNCHRONIZED = TypedProperty.with("synchronized", Boolean.class);
+	protected static final TypedProperty<Boolean> STREAMING_EXTRACTION = TypedProperty.with("streamingExtraction", Boolean.class);
+	protected static final TypedProperty<Boolean> EXTRACT_ALL_COMMANDS = TypedProperty.with("extractAllCommands", Boolean.class);
+	protected static final TypedProperty<Long> CACHE_SIZE_LIMIT = TypedProperty.with("cacheSizeLimit", Long.class);
+	protected static final TypedProperty<File> BUNDLE = TypedProperty.with("bundle", File.class);
+	protected static final TypedProperty<ExecutableMode> EXECUTABLE_MODE = TypedProperty.with("executableMode", ExecutableMode.class);
+
+	public ExtractedArtifactStoreBuilder() {
+		property(SYNCHRONIZED).setDefault(true);
+		property(STREAMING_EXTRACTION).setDefault(false);
+		property(EXTRACT_ALL_COMMANDS).setDefault(false);
+		property(CACHE_SIZE_LIMIT).setDefault(null);
+		property(BUNDLE).setDefault(null);
+		property(EXECUTABLE_MODE).setDefault(ExecutableMode.COPY);
+	}
+
+	/**
+	 * if enabled (default) each distribution is downloaded and extracted only
+	 * once, even with many threads or jvms sharing the artifact store path
+	 */
+	public ExtractedArtifactStoreBuilder synchronizedAccess(boolean enable) {
+		set(SYNCHRONIZED, enable);
+		return this;
+	}
+
+	/**
+	 * extract only the needed files in one pass over the archive, see
+	 * {@link StreamingExtractedArtifactStore}
+	 */
+	public ExtractedArtifactStoreBuilder streamingExtraction(boolean enable) {
+		set(STREAMING_EXTRACTION, enable);
+		return this;
+	}
+
+	/**
+	 * streaming extraction of the executables of every {@link Command} on first
+	 * access to a distribution, so stores for other commands find them extracted
+	 */
+	public ExtractedArtifactStoreBuilder extractAllCommands(boolean enable) {
+		set(EXTRACT_ALL_COMMANDS, enable);
+		return this;
+	}
+
+	/**
+	 * keep archives and extracted files content addressed in an
+	 * {@link ArtifactCache} in the artifact store path, evict least recently used
+	 * archives if it grows beyond maxSizeInBytes
+	 */
+	public ExtractedArtifactStoreBuilder cacheSizeLimit(long maxSizeInBytes) {
+		set(CACHE_SIZE_LIMIT, maxSizeInBytes);
+		return this;
+	}
+
+	/**
+	 * run the extracted executable directly or from a hardlink instead of a copy
+	 * per start, implies streaming extraction
+	 */
+	public ExtractedArtifactStoreBuilder executableMode(ExecutableMode executableMode) {
+		set(EXECUTABLE_MODE, executableMode);
+		return this;
+	}
+
+	/**
+	 * resolve executables from an {@link ArtifactBundle} file only, nothing is
+	 * downloaded or decompressed, each start still gets a copy in the temp dir.
+	 * Defaults to EMBEDDED_MONGO_ARTIFACTS if it points to a file.
+	 */
+	public ExtractedArtifactStoreBuilder bundle(File bundle) {
+		set(BUNDLE, bundle);
+		return this;
+	}
+
 	public ExtractedArtifactStoreBuilder defaults(Command command) {
 		extractDir().setDefault(new UserHome(".embedmongo/extracted"));
 		extractExecutableNaming().setDefault(new NoopTempNaming());
@@ -36,6 +123,46 @@ public class ExtractedArtifactStoreBuilder extends de.flapdoodle.embed.process.s
 		executableNaming().setDefault(new UUIDTempNaming());
 		download().setDefault(new DownloadConfigBuilder().defaultsForCommand(command).build());
 		downloader().setDefault(new Downloader());
+		File artifacts = DownloadConfigBuilder.artifactDownloadLocationFromEnvironment();
+		if (artifacts != null && artifacts.isFile()) {
+			property(BUNDLE).setDefault(artifacts);
+		}
 		return this;
 	}
+
+	@Override
+	public IArtifactStore build() {
+		IArtifactStore store;
+		Long cacheSizeLimit = get(CACHE_SIZE_LIMIT, null);
+		File bundle = get(BUNDLE, null);
+		if (bundle != null) {
+			// read only, nothing to synchronize
+			try {
+				return new BundleArtifactStore(bundle, download().get().getPackageResolver(), tempDir().get(),
+						executableNaming().get());
+			} catch (IOException e) {
+				throw new IllegalArgumentException("could not open bundle " + bundle, e);
+			}
+		}
+		ExecutableMode executableMode = get(EXECUTABLE_MODE);
+		if (get(STREAMING_EXTRACTION) || get(EXTRACT_ALL_COMMANDS) || cacheSizeLimit != null
+				|| executableMode != ExecutableMode.COPY) {
+			List<IPackageResolver> extractTogether = new ArrayList<>();
+			if (get(EXTRACT_ALL_COMMANDS)) {
+				for (Command command : Command.values()) {
+					extractTogether.add(new Paths(command));
+				}
+			}
+			store = new StreamingExtractedArtifactStore(download().get(), downloader().get(), extractDir().get(), tempDir().get(),
+					executableNaming().get(), extractTogether, cacheSizeLimit != null
+							? new ArtifactCache(download().get().getArtifactStorePath().asFile(), cacheSizeLimit)
+							: null, executableMode);
+		} else {
+			store = super.build();
+		}
+		if (get(SYNCHRONIZED)) {
+			return new SynchronizedArtifactStore(store, download().get().getArtifactStorePath());
+		}
+		return store;
+	}
 }
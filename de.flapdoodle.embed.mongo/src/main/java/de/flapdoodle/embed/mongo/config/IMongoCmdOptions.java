@@ -27,6 +27,8 @@ public interface IMongoCmdOptions {
 
 	String storageEngine();
 
+	Integer wiredTigerCacheSizeGB();
+
 	boolean isVerbose();
 
 	boolean useNoPrealloc();
@@ -23,6 +23,7 @@ package de.flapdoodle.embed.mongo.config;
 import java.util.Map;
 
 import de.flapdoodle.embed.mongo.config.processlistener.IMongoProcessListener;
+import de.flapdoodle.embed.mongo.runtime.IReadinessCheck;
 
 public interface IMongodConfig extends IMongoConfig {
 
@@ -34,6 +35,8 @@ public interface IMongodConfig extends IMongoConfig {
 
 	IMongoProcessListener processListener();
 
+	IReadinessCheck readinessCheck();
+
 	Map<String, String> params();
 	
 	Map<String, String> args();
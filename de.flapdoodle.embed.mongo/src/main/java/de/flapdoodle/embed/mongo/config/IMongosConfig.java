@@ -23,6 +23,8 @@ package de.flapdoodle.embed.mongo.config;
 
 import java.util.Map;
 
+import de.flapdoodle.embed.mongo.runtime.IReadinessCheck;
+
 public interface IMongosConfig extends IMongoConfig {
 
 	String getConfigDB();
@@ -30,4 +32,6 @@ public interface IMongosConfig extends IMongoConfig {
 	String replicaSet();
 
 	Map<String, String> args();
+
+	IReadinessCheck readinessCheck();
 }
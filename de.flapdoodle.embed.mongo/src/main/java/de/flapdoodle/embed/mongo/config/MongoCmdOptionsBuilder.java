@@ -28,6 +28,7 @@ public class MongoCmdOptionsBuilder extends AbstractBuilder<IMongoCmdOptions> {
 
 	protected static final TypedProperty<Integer> SYNC_DELAY = TypedProperty.with("syncDelay", Integer.class);
 	protected static final TypedProperty<String> STORAGE_ENGINE = TypedProperty.with("storageEngine", String.class);
+	protected static final TypedProperty<Integer> WIRED_TIGER_CACHE_SIZE_GB = TypedProperty.with("wiredTigerCacheSizeGB", Integer.class);
 	protected static final TypedProperty<Boolean> VERBOSE = TypedProperty.with("verbose", Boolean.class);
 	protected static final TypedProperty<Boolean> NOPREALLOC = TypedProperty.with("noprealloc", Boolean.class);
 	protected static final TypedProperty<Boolean> SMALLFILES = TypedProperty.with("smallfiles", Boolean.class);
@@ -40,6 +41,7 @@ public class MongoCmdOptionsBuilder extends AbstractBuilder<IMongoCmdOptions> {
 	public MongoCmdOptionsBuilder() {
 		property(SYNC_DELAY).setDefault(0);
 		property(STORAGE_ENGINE).setDefault(null);
+		property(WIRED_TIGER_CACHE_SIZE_GB).setDefault(null);
 		property(VERBOSE).setDefault(false);
 		property(NOPREALLOC).setDefault(true);
 		property(SMALLFILES).setDefault(true);
@@ -84,6 +86,27 @@ public class MongoCmdOptionsBuilder extends AbstractBuilder<IMongoCmdOptions> {
 		return this;
 	}
 
+	/**
+	 * only valid with the wiredTiger storage engine
+	 */
+	public MongoCmdOptionsBuilder wiredTigerCacheSizeGB(int sizeInGB) {
+		set(WIRED_TIGER_CACHE_SIZE_GB, sizeInGB);
+		return this;
+	}
+
+	/**
+	 * no journal, no sync delay and the smallest wiredTiger cache all versions
+	 * accept, for write heavy tests with a database dir on a ram disk
+	 * 
+	 * @see Storage#onRamDisk()
+	 */
+	public MongoCmdOptionsBuilder inMemoryDefaults() {
+		useNoJournal(true);
+		syncDelay(0);
+		wiredTigerCacheSizeGB(1);
+		return this;
+	}
+
 	public MongoCmdOptionsBuilder enableAuth(boolean enable) {
 		set(ENABLE_AUTH, enable);
 		return this;
@@ -103,6 +126,7 @@ public class MongoCmdOptionsBuilder extends AbstractBuilder<IMongoCmdOptions> {
 	public IMongoCmdOptions build() {
 		Integer syncDelay = get(SYNC_DELAY, null);
 		String storageEngine = get(STORAGE_ENGINE, null);
+		Integer wiredTigerCacheSizeGB = get(WIRED_TIGER_CACHE_SIZE_GB, null);
 		boolean verbose = get(VERBOSE);
 		boolean noPrealloc = get(NOPREALLOC);
 		boolean smallFiles = get(SMALLFILES);
@@ -110,7 +134,7 @@ public class MongoCmdOptionsBuilder extends AbstractBuilder<IMongoCmdOptions> {
 		boolean enableTextSearch = get(ENABLE_TEXTSEARCH);
 		boolean auth = get(ENABLE_AUTH);
 		boolean master = get(MASTER);
-		return new MongoCmdOptions(syncDelay, storageEngine, verbose, noPrealloc, smallFiles, noJournal, enableTextSearch, auth, master);
+		return new MongoCmdOptions(syncDelay, storageEngine, wiredTigerCacheSizeGB, verbose, noPrealloc, smallFiles, noJournal, enableTextSearch, auth, master);
 	}
 
 	static class MongoCmdOptions implements IMongoCmdOptions {
@@ -124,11 +148,13 @@ public class MongoCmdOptionsBuilder extends AbstractBuilder<IMongoCmdOptions> {
 		private final boolean _auth;
 		private final boolean _master;
 		private final String _storageEngine;
+		private final Integer _wiredTigerCacheSizeGB;
 
-		public MongoCmdOptions(Integer syncDelay, String storageEngine, boolean verbose, boolean noPrealloc, boolean smallFiles,
+		public MongoCmdOptions(Integer syncDelay, String storageEngine, Integer wiredTigerCacheSizeGB, boolean verbose, boolean noPrealloc, boolean smallFiles,
                                boolean noJournal, boolean enableTextSearch, boolean auth, boolean master) {
 			_syncDelay = syncDelay;
 			_storageEngine = storageEngine;
+			_wiredTigerCacheSizeGB = wiredTigerCacheSizeGB;
 			_verbose = verbose;
 			_noPrealloc = noPrealloc;
 			_smallFiles = smallFiles;
@@ -148,6 +174,11 @@ public class MongoCmdOptionsBuilder extends AbstractBuilder<IMongoCmdOptions> {
 			return _storageEngine;
 		}
 
+		@Override
+		public Integer wiredTigerCacheSizeGB() {
+			return _wiredTigerCacheSizeGB;
+		}
+
 		@Override
 		public boolean isVerbose() {
 			return _verbose;
@@ -30,6 +30,8 @@ import de.flapdoodle.embed.mongo.Command;
 import de.flapdoodle.embed.mongo.config.processlistener.IMongoProcessListener;
 import de.flapdoodle.embed.mongo.config.processlistener.NoopProcessListener;
 import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
+import de.flapdoodle.embed.mongo.runtime.IReadinessCheck;
+import de.flapdoodle.embed.mongo.runtime.ReadinessChecks;
 import de.flapdoodle.embed.process.builder.TypedProperty;
 
 public class MongodConfigBuilder extends AbstractMongoConfigBuilder<IMongodConfig> {
@@ -48,6 +50,7 @@ public class MongodConfigBuilder extends AbstractMongoConfigBuilder<IMongodConfi
 		property(SHARD_SERVER).setDefault(false);
 		property(PROCESS_LISTENER).setDefault(new NoopProcessListener());
 		property(PID_FILE).setDefault("mongod.pid");
+		readinessCheck().setDefault(ReadinessChecks.logMessage());
 	}
 
 	public MongodConfigBuilder version(IFeatureAwareVersion version) {
@@ -110,6 +113,11 @@ public class MongodConfigBuilder extends AbstractMongoConfigBuilder<IMongodConfi
         return this;
     }
 
+	public MongodConfigBuilder readinessCheck(IReadinessCheck readinessCheck) {
+		readinessCheck().set(readinessCheck);
+		return this;
+	}
+
 	@Override
 	public IMongodConfig build() {
 		IFeatureAwareVersion version=version().get();
@@ -121,8 +129,9 @@ public class MongodConfigBuilder extends AbstractMongoConfigBuilder<IMongodConfi
 		IMongoCmdOptions cmdOptions=get(CMD_OPTIONS);
 		IMongoProcessListener processListener=get(PROCESS_LISTENER);
 		String pidFile=get(PID_FILE);
+		IReadinessCheck readinessCheck=get(READINESS_CHECK);
 
-		return new ImmutableMongodConfig(version, net, timeout, cmdOptions, pidFile, replication, configServer, shardServer, processListener, params, args);
+		return new ImmutableMongodConfig(version, net, timeout, cmdOptions, pidFile, replication, configServer, shardServer, processListener, readinessCheck, params, args);
 	}
 
 	static class ImmutableMongodConfig extends ImmutableMongoConfig implements IMongodConfig {
@@ -131,17 +140,20 @@ public class MongodConfigBuilder extends AbstractMongoConfigBuilder<IMongodConfi
 		private final boolean _configServer;
 		private final boolean _shardServer;
 		private final IMongoProcessListener _processListener;
+		private final IReadinessCheck _readinessCheck;
 		private final Map<String, String> _params;
 		private final Map<String, String> _args;
 
 		public ImmutableMongodConfig(IFeatureAwareVersion version, Net net, Timeout timeout, IMongoCmdOptions cmdOptions,
 										String pidFile, Storage replication, boolean configServer,boolean shardServer,
-										IMongoProcessListener processListener, Map<String, String> params, Map<String, String> args) {
+										IMongoProcessListener processListener, IReadinessCheck readinessCheck,
+										Map<String, String> params, Map<String, String> args) {
 			super(new SupportConfig(Command.MongoD), version, net, null, null, timeout, cmdOptions, pidFile);
 			_replication = replication;
 			_configServer = configServer;
 			_shardServer = shardServer;
 			_processListener = processListener;
+			_readinessCheck = readinessCheck;
 			_params = new LinkedHashMap<>(params);
 			_args = new LinkedHashMap<>(args);
 		}
@@ -166,6 +178,11 @@ public class MongodConfigBuilder extends AbstractMongoConfigBuilder<IMongodConfi
 			return _processListener;
 		}
 
+		@Override
+		public IReadinessCheck readinessCheck() {
+			return _readinessCheck;
+		}
+
 		@Override
 		public Map<String, String> params() {
 			return Collections.unmodifiableMap(_params);
@@ -21,6 +21,8 @@
 package de.flapdoodle.embed.mongo.config;
 
 import de.flapdoodle.embed.mongo.Command;
+import de.flapdoodle.embed.mongo.runtime.AsyncStreamProcessor;
+import de.flapdoodle.embed.mongo.runtime.AsyncStreamProcessor.OverflowPolicy;
 import de.flapdoodle.embed.process.config.io.ProcessOutput;
 
 /**
@@ -40,4 +42,22 @@ public class MongodProcessOutputConfig {
 	public static ProcessOutput getInstance(Command command, org.slf4j.Logger logger) {
 		return ProcessOutput.getInstance(command.commandName(), logger);
 	}
+
+	/**
+	 * Like {@link #getInstance(Command, org.slf4j.Logger)}, but a slow logger
+	 * does not block the process, lines are dropped if the logger can not keep up.
+	 */
+	public static ProcessOutput getAsyncInstance(Command command, org.slf4j.Logger logger) {
+		return async(getInstance(command, logger), AsyncStreamProcessor.DEFAULT_CAPACITY, OverflowPolicy.DROP);
+	}
+
+	/**
+	 * Passes output and error through an {@link AsyncStreamProcessor} each.
+	 */
+	public static ProcessOutput async(ProcessOutput processOutput, int capacity, OverflowPolicy overflowPolicy) {
+		return new ProcessOutput(
+				new AsyncStreamProcessor(processOutput.getOutput(), capacity, AsyncStreamProcessor.DEFAULT_BATCH_SIZE, overflowPolicy),
+				new AsyncStreamProcessor(processOutput.getError(), capacity, AsyncStreamProcessor.DEFAULT_BATCH_SIZE, overflowPolicy),
+				processOutput.getCommands());
+	}
 }
@@ -27,6 +27,8 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
+import de.flapdoodle.embed.mongo.runtime.IReadinessCheck;
+import de.flapdoodle.embed.mongo.runtime.ReadinessChecks;
 import de.flapdoodle.embed.process.builder.TypedProperty;
 
 public class MongosConfigBuilder extends AbstractMongoConfigBuilder<IMongosConfig> {
@@ -39,6 +41,7 @@ public class MongosConfigBuilder extends AbstractMongoConfigBuilder<IMongosConfi
 		super();
 		property(PID_FILE).setDefault("mongos.pid");
 		property(RELICA_SET).setDefault("");
+		readinessCheck().setDefault(ReadinessChecks.logMessage());
 	}
 
 	public MongosConfigBuilder version(IFeatureAwareVersion version) {
@@ -75,6 +78,11 @@ public class MongosConfigBuilder extends AbstractMongoConfigBuilder<IMongosConfi
 		set(RELICA_SET, replicaSet);
 		return this;
 	}
+
+	public MongosConfigBuilder readinessCheck(IReadinessCheck readinessCheck) {
+		readinessCheck().set(readinessCheck);
+		return this;
+	}
 	
 	@Override
 	public IMongosConfig build() {
@@ -85,8 +93,9 @@ public class MongosConfigBuilder extends AbstractMongoConfigBuilder<IMongosConfi
 		String replicaSet = get(RELICA_SET);
 		IMongoCmdOptions cmdOptions=get(CMD_OPTIONS);
 		String pidFile = get(PID_FILE);
+		IReadinessCheck readinessCheck = get(READINESS_CHECK);
 
-		return new ImmutableMongosConfig(version, net, timeout, cmdOptions, pidFile, configDB, replicaSet, args);
+		return new ImmutableMongosConfig(version, net, timeout, cmdOptions, pidFile, configDB, replicaSet, readinessCheck, args);
 	}
 
 	static class ImmutableMongosConfig extends ImmutableMongoConfig implements IMongosConfig {
@@ -94,12 +103,15 @@ public class MongosConfigBuilder extends AbstractMongoConfigBuilder<IMongosConfi
 		private final String _configDB;
 		private final Map<String, String> _args;
 		private final String replicaSet;
+		private final IReadinessCheck _readinessCheck;
 
 		public ImmutableMongosConfig(IFeatureAwareVersion version, Net net, Timeout timeout, IMongoCmdOptions cmdOptions,
-										String pidFile, String configDB, String replicaSet, Map<String, String> args) {
+										String pidFile, String configDB, String replicaSet, IReadinessCheck readinessCheck,
+										Map<String, String> args) {
 			super(MongosSupportConfig.getInstance(), version, net, null, null, timeout, cmdOptions, pidFile);
 			_configDB = configDB;
 			this.replicaSet = replicaSet;
+			_readinessCheck = readinessCheck;
 			_args = new LinkedHashMap<>(args);
 		}
 
@@ -113,6 +125,11 @@ public class MongosConfigBuilder extends AbstractMongoConfigBuilder<IMongosConfi
 			return replicaSet;
 		}
 
+		@Override
+		public IReadinessCheck readinessCheck() {
+			return _readinessCheck;
+		}
+
 		@Override
 		public Map<String, String> args() {
 			return Collections.unmodifiableMap(_args);
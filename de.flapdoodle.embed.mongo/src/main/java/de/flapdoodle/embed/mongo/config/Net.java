@@ -20,6 +20,7 @@
  */
 package de.flapdoodle.embed.mongo.config;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
@@ -28,9 +29,18 @@ import de.flapdoodle.embed.process.runtime.Network;
 
 public class Net {
 
+	/**
+	 * sun_path of a unix domain socket address is 108 bytes on linux, 104 on
+	 * osx, including the terminating zero
+	 */
+	static final int MAX_UNIX_SOCKET_PATH_LENGTH = 103;
+
+	private static final String LOOPBACK = "127.0.0.1";
+
 	private final String bindIp;
 	private final int port;
 	private final boolean ipv6;
+	private final File unixSocketPrefix;
 
 	public Net() throws IOException {
 		this(null, Network.getFreeServerPort(), Network.localhostIsIPv6());
@@ -41,9 +51,33 @@ public class Net {
 	}
 
 	public Net(String bindIp, int port, boolean ipv6) {
+		this(bindIp, port, ipv6, null);
+	}
+
+	private Net(String bindIp, int port, boolean ipv6, File unixSocketPrefix) {
 		this.bindIp = bindIp;
 		this.port = port;
 		this.ipv6 = ipv6;
+		this.unixSocketPrefix = unixSocketPrefix;
+	}
+
+	/**
+	 * Local clients connect through the unix domain socket
+	 * prefixDir/mongodb-port.sock (--unixSocketPrefix). mongod can not run
+	 * without a tcp listener, so tcp is bound to 127.0.0.1 only; the port is
+	 * still needed for the socket name and for admin commands. Not supported
+	 * on windows.
+	 */
+	public static Net unixSocket(File prefixDir, int port) {
+		Net net = new Net(LOOPBACK, port, false, prefixDir);
+		if (net.getUnixSocket().getAbsolutePath().length() > MAX_UNIX_SOCKET_PATH_LENGTH) {
+			throw new IllegalArgumentException("unix socket path too long: " + net.getUnixSocket());
+		}
+		return net;
+	}
+
+	public static Net unixSocket(File prefixDir) throws IOException {
+		return unixSocket(prefixDir, Network.getFreeServerPort());
 	}
 
 	public String getBindIp() {
@@ -58,6 +92,27 @@ public class Net {
 		return ipv6;
 	}
 
+	/**
+	 * @return the directory of the unix domain socket, null if clients use tcp
+	 */
+	public File getUnixSocketPrefix() {
+		return unixSocketPrefix;
+	}
+
+	public boolean isUnixSocket() {
+		return unixSocketPrefix != null;
+	}
+
+	/**
+	 * @return the socket file mongod creates, null if clients use tcp
+	 */
+	public File getUnixSocket() {
+		if (unixSocketPrefix == null) {
+			return null;
+		}
+		return new File(unixSocketPrefix, "mongodb-" + port + ".sock");
+	}
+
 	public InetAddress getServerAddress() throws UnknownHostException {
 		if (bindIp != null) {
 			return InetAddress.getByName(bindIp);
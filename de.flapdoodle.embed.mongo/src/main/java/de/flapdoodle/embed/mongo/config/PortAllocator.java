@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.config;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.flapdoodle.embed.process.io.directories.PropertyOrPlatformTempDir;
+
+/**
+ * Hands out ports that no other allocator in this or another JVM on the same
+ * machine has reserved. A reservation is a lock on a file per port, so it
+ * disappears with the JVM that holds it. The port must also be bindable
+ * when it is reserved.
+ *
+ * Unlike {@link Net#Net()}, two parallel starts never get the same port from
+ * an allocator, as long as the reservation is kept until the process is
+ * stopped. Parallel test forks can use disjoint ranges, see
+ * {@link #forFork(int)}.
+ */
+public class PortAllocator {
+
+	private static Logger logger = LoggerFactory.getLogger(PortAllocator.class);
+
+	/**
+	 * below the ephemeral port range of linux and windows
+	 */
+	public static final int DEFAULT_FIRST_PORT = 20000;
+	public static final int DEFAULT_LAST_PORT = 32000;
+	public static final int DEFAULT_PORTS_PER_FORK = 100;
+
+	/**
+	 * system property with the number of the test fork, e.g. set to
+	 * ${surefire.forkNumber} in the surefire systemPropertyVariables
+	 */
+	public static final String FORK_NUMBER_PROPERTY = "embedmongo.forkNumber";
+
+	private static final Set<Integer> RESERVED_IN_THIS_JVM = ConcurrentHashMap.newKeySet();
+
+	private static PortAllocator defaultInstance;
+
+	private final File lockDir;
+	private final int firstPort;
+	private final int lastPort;
+
+	public PortAllocator(File lockDir, int firstPort, int lastPort) {
+		if (firstPort < 1 || lastPort > 65535 || firstPort > lastPort) {
+			throw new IllegalArgumentException("invalid port range " + firstPort + "-" + lastPort);
+		}
+		this.lockDir = lockDir;
+		this.firstPort = firstPort;
+		this.lastPort = lastPort;
+	}
+
+	/**
+	 * @return allocator for the fork set in {@link #FORK_NUMBER_PROPERTY} or for
+	 *         the whole default range
+	 */
+	public static synchronized PortAllocator defaultInstance() {
+		if (defaultInstance == null) {
+			String forkNumber = System.getProperty(FORK_NUMBER_PROPERTY);
+			defaultInstance = forkNumber != null && !forkNumber.isEmpty()
+					? forFork(Integer.parseInt(forkNumber.trim()))
+					: new PortAllocator(defaultLockDir(), DEFAULT_FIRST_PORT, DEFAULT_LAST_PORT);
+		}
+		return defaultInstance;
+	}
+
+	/**
+	 * @param forkNumber 1 based like surefire.forkNumber, forks beyond the
+	 *            default range wrap around
+	 */
+	public static PortAllocator forFork(int forkNumber) {
+		int forks = (DEFAULT_LAST_PORT - DEFAULT_FIRST_PORT + 1) / DEFAULT_PORTS_PER_FORK;
+		int first = DEFAULT_FIRST_PORT + (Math.max(forkNumber - 1, 0) % forks) * DEFAULT_PORTS_PER_FORK;
+		return new PortAllocator(defaultLockDir(), first, first + DEFAULT_PORTS_PER_FORK - 1);
+	}
+
+	private static File defaultLockDir() {
+		return new File(PropertyOrPlatformTempDir.defaultInstance().asFile(), "embedmongo-ports");
+	}
+
+	/**
+	 * Reserves a free port, starting at a random offset in the range.
+	 *
+	 * @throws IOException if every port of the range is reserved or in use
+	 */
+	public Reservation reserve() throws IOException {
+		if (!lockDir.isDirectory() && !lockDir.mkdirs() && !lockDir.isDirectory()) {
+			throw new IOException("could not create " + lockDir);
+		}
+		int size = lastPort - firstPort + 1;
+		int offset = ThreadLocalRandom.current().nextInt(size);
+		for (int i = 0; i < size; i++) {
+			int port = firstPort + (offset + i) % size;
+			Reservation reservation = tryReserve(port);
+			if (reservation != null) {
+				return reservation;
+			}
+		}
+		throw new IOException("no free port in " + firstPort + "-" + lastPort);
+	}
+
+	private Reservation tryReserve(int port) throws IOException {
+		if (!RESERVED_IN_THIS_JVM.add(port)) {
+			return null;
+		}
+		FileChannel channel = null;
+		Reservation reservation = null;
+		try {
+			channel = new RandomAccessFile(new File(lockDir, "port-" + port + ".lock"), "rw").getChannel();
+			FileLock lock = channel.tryLock();
+			if (lock != null && isBindable(port)) {
+				reservation = new Reservation(port, channel);
+			} else {
+				logger.debug("port {} is reserved or in use", port);
+			}
+		} catch (OverlappingFileLockException e) {
+			logger.debug("port {} is reserved in this jvm", port);
+		} finally {
+			if (reservation == null) {
+				try {
+					if (channel != null) {
+						channel.close();
+					}
+				} finally {
+					RESERVED_IN_THIS_JVM.remove(port);
+				}
+			}
+		}
+		return reservation;
+	}
+
+	static boolean isBindable(int port) {
+		try (ServerSocket socket = new ServerSocket()) {
+			socket.setReuseAddress(false);
+			socket.bind(new InetSocketAddress(port));
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Keep it until the process using the port is stopped.
+	 */
+	public static class Reservation implements Closeable {
+
+		private final int port;
+		private final FileChannel channel;
+		private boolean closed = false;
+
+		Reservation(int port, FileChannel channel) {
+			this.port = port;
+			this.channel = channel;
+		}
+
+		public int port() {
+			return port;
+		}
+
+		/**
+		 * releases the port
+		 */
+		@Override
+		public synchronized void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				try {
+					// releases the lock
+					channel.close();
+				} finally {
+					RESERVED_IN_THIS_JVM.remove(port);
+				}
+			}
+		}
+	}
+}
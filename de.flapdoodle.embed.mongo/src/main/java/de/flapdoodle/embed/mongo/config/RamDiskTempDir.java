@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.config;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.flapdoodle.embed.process.io.directories.IDirectory;
+import de.flapdoodle.embed.process.io.directories.PropertyOrPlatformTempDir;
+
+/**
+ * Temp directory on a RAM backed filesystem like /dev/shm. Falls back to
+ * another directory if the ram disk does not exist, is not writable or has
+ * less usable space than required.
+ */
+public class RamDiskTempDir implements IDirectory {
+
+	private static Logger logger = LoggerFactory.getLogger(RamDiskTempDir.class);
+
+	public static final String DEFAULT_RAM_DISK = "/dev/shm";
+	public static final long DEFAULT_MIN_USABLE_SPACE = 512L * 1024 * 1024;
+
+	private final File ramDisk;
+	private final long minUsableSpace;
+	private final IDirectory fallback;
+
+	public RamDiskTempDir() {
+		this(DEFAULT_MIN_USABLE_SPACE);
+	}
+
+	public RamDiskTempDir(long minUsableSpace) {
+		this(new File(DEFAULT_RAM_DISK), minUsableSpace, PropertyOrPlatformTempDir.defaultInstance());
+	}
+
+	public RamDiskTempDir(File ramDisk, long minUsableSpace, IDirectory fallback) {
+		this.ramDisk = ramDisk;
+		this.minUsableSpace = minUsableSpace;
+		this.fallback = fallback;
+	}
+
+	@Override
+	public File asFile() {
+		if (isUsable()) {
+			return ramDisk;
+		}
+		File ret = fallback.asFile();
+		logger.info("ram disk {} not usable (min {} bytes free), fall back to {}", ramDisk, minUsableSpace, ret);
+		return ret;
+	}
+
+	@Override
+	public boolean isGenerated() {
+		return false;
+	}
+
+	boolean isUsable() {
+		return ramDisk.isDirectory() && ramDisk.canWrite() && ramDisk.getUsableSpace() >= minUsableSpace;
+	}
+}
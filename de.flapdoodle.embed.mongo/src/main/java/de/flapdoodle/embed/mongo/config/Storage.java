@@ -20,20 +20,39 @@
  */
 package de.flapdoodle.embed.mongo.config;
 
+import de.flapdoodle.embed.process.io.directories.IDirectory;
+
 public class Storage {
 
 	private final int oplogSize;
 	private final String replSetName;
 	private final String databaseDir;
+	private final IDirectory tempDir;
 
 	public Storage() {
 		this(null, null, 0);
 	}
 
 	public Storage(String databaseDir, String replSetName, int oplogSize) {
+		this(databaseDir, replSetName, oplogSize, null);
+	}
+
+	/**
+	 * @param tempDir parent of the generated database dir if databaseDir is null,
+	 *            the platform temp dir is used if this is null
+	 */
+	public Storage(String databaseDir, String replSetName, int oplogSize, IDirectory tempDir) {
 		this.databaseDir = databaseDir;
 		this.replSetName = replSetName;
 		this.oplogSize = oplogSize;
+		this.tempDir = tempDir;
+	}
+
+	/**
+	 * generated database dir on a ram disk, if there is one with enough space
+	 */
+	public static Storage onRamDisk() {
+		return new Storage(null, null, 0, new RamDiskTempDir());
 	}
 
 	public int getOplogSize() {
@@ -47,4 +66,8 @@ public class Storage {
 	public String getDatabaseDir() {
 		return databaseDir;
 	}
+
+	public IDirectory getTempDir() {
+		return tempDir;
+	}
 }
\ No newline at end of file
@@ -23,16 +23,30 @@ package de.flapdoodle.embed.mongo.config;
 public class Timeout {
 
 	private final long startupTimeout;
+	private final long shutdownTimeout;
 
 	public Timeout() {
 		this(20000);
 	}
 
 	public Timeout(long startupTimeout) {
+		this(startupTimeout, 0);
+	}
+
+	/**
+	 * @param shutdownTimeout if greater than 0, the process is stopped by sending the shutdown command
+	 *            and waiting at most this long for each step before the next kill attempt
+	 */
+	public Timeout(long startupTimeout, long shutdownTimeout) {
 		this.startupTimeout = startupTimeout;
+		this.shutdownTimeout = shutdownTimeout;
 	}
 
 	public long getStartupTimeout() {
 		return startupTimeout;
 	}
+
+	public long getShutdownTimeout() {
+		return shutdownTimeout;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,248 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.config.processlistener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.flapdoodle.embed.process.distribution.Platform;
+
+/**
+ * Copies db directories with the cheapest strategy the platform and the
+ * filesystem support.
+ *
+ * Hardlinking is opt-in: only files matching a caller supplied pattern are
+ * linked. The default {@link #DEFAULT_IMMUTABLE_FILES} matches just the small
+ * metadata files, so without a copy on write clone the collection and index
+ * files, i.e. nearly all the data, are still copied. Pass {@link #ALL_FILES}
+ * or a pattern for collection and index files (e.g.
+ * {@code (collection|index)-.*\.wt}) to link them too, but only for
+ * templates no mongod writes to afterwards, because WiredTiger modifies these
+ * files in place through every link.
+ */
+public abstract class DbFiles {
+
+	private static Logger logger = LoggerFactory.getLogger(DbFiles.class);
+
+	/**
+	 * files mongod never modifies in place, so they can be shared via hardlinks.
+	 * These are only a few small files, collection, index and journal files are
+	 * written in place and copied, a hardlink would change the template too.
+	 */
+	public static final Pattern DEFAULT_IMMUTABLE_FILES = Pattern.compile("WiredTiger|storage\\.bson");
+
+	/**
+	 * every file is hardlinked, only for templates that are never started
+	 * again and db dirs that are only read
+	 */
+	public static final Pattern ALL_FILES = Pattern.compile(".*");
+
+	public enum CopyStrategy {
+		/**
+		 * copy on write clone of the whole directory
+		 */
+		REFLINK,
+		/**
+		 * every file is hardlinked
+		 */
+		HARDLINK,
+		/**
+		 * files are copied, only immutable ones hardlinked
+		 */
+		COPY
+	}
+
+	private DbFiles() {
+		// no instance
+	}
+
+	/**
+	 * Materializes a copy of the source directory in the destination directory.
+	 * Tries a copy on write clone first, falls back to hardlinks for files
+	 * matching immutableFiles and to parallel copies for everything else.
+	 *
+	 * @return the strategy that was used
+	 */
+	public static CopyStrategy cloneLinkOrCopy(File source, File destination, Pattern immutableFiles) throws IOException {
+		if (reflink(source, destination)) {
+			return CopyStrategy.REFLINK;
+		}
+		return linkOrCopy(source.toPath(), destination.toPath(), immutableFiles);
+	}
+
+	/**
+	 * Copies every file of the source directory in parallel.
+	 */
+	public static void copy(File source, File destination) throws IOException {
+		linkOrCopy(source.toPath(), destination.toPath(), null);
+	}
+
+	/**
+	 * Copies the given files, relative to the source directory, in parallel.
+	 */
+	public static void copy(final Path source, final Path destination, List<Path> relativeFiles) throws IOException {
+		List<Task> tasks = new ArrayList<>();
+		for (Path relative : relativeFiles) {
+			final Path from = source.resolve(relative);
+			final Path to = destination.resolve(relative);
+			tasks.add(() -> {
+				Files.createDirectories(to.getParent());
+				copyFile(from, to);
+				return false;
+			});
+		}
+		runInParallel(tasks);
+	}
+
+	static boolean reflink(File source, File destination) {
+		if (Platform.detect() != Platform.Linux) {
+			return false;
+		}
+		try {
+			Process cp = new ProcessBuilder("cp", "-R", "--reflink=always", "--preserve=timestamps", source.getAbsolutePath() + "/.",
+					destination.getAbsolutePath())
+				.redirectErrorStream(true)
+				.start();
+			try (InputStream output = cp.getInputStream()) {
+				byte[] buffer = new byte[1024];
+				while (output.read(buffer) != -1) {
+					// drain, only the exit code is of interest
+				}
+			}
+			return cp.waitFor() == 0;
+		} catch (IOException e) {
+			logger.debug("reflink not possible", e);
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	static CopyStrategy linkOrCopy(File source, File destination, Pattern immutableFiles) throws IOException {
+		return linkOrCopy(source.toPath(), destination.toPath(), immutableFiles);
+	}
+
+	private static CopyStrategy linkOrCopy(final Path source, final Path destination, final Pattern immutableFiles) throws IOException {
+		final List<Task> tasks = new ArrayList<>();
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				Files.createDirectories(destination.resolve(source.relativize(dir)));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(final Path file, BasicFileAttributes attrs) {
+				final Path target = destination.resolve(source.relativize(file));
+				final boolean immutable = immutableFiles != null && immutableFiles.matcher(file.getFileName().toString()).matches();
+				tasks.add(() -> immutable ? linkOrCopyFile(file, target) : copyFile(file, target));
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		int linked = runInParallel(tasks);
+		logger.debug("linked {} of {} files", linked, tasks.size());
+		return !tasks.isEmpty() && linked == tasks.size() ? CopyStrategy.HARDLINK : CopyStrategy.COPY;
+	}
+
+	private static boolean linkOrCopyFile(Path source, Path destination) throws IOException {
+		try {
+			Files.deleteIfExists(destination);
+			Files.createLink(destination, source);
+			return true;
+		} catch (IOException | UnsupportedOperationException e) {
+			logger.debug("could not link {}, copy it", source, e);
+			return copyFile(source, destination);
+		}
+	}
+
+	private static boolean copyFile(Path source, Path destination) throws IOException {
+		try (FileChannel from = FileChannel.open(source, StandardOpenOption.READ);
+				FileChannel to = FileChannel.open(destination, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = from.size();
+			long position = 0;
+			while (position < size) {
+				position += from.transferTo(position, size - position, to);
+			}
+		}
+		Files.setLastModifiedTime(destination, Files.getLastModifiedTime(source));
+		return false;
+	}
+
+	/**
+	 * @return number of tasks that linked instead of copied
+	 */
+	private static int runInParallel(List<Task> tasks) throws IOException {
+		if (tasks.isEmpty()) {
+			return 0;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (Task task : tasks) {
+				results.add(executor.submit(() -> task.run()));
+			}
+			int linked = 0;
+			for (Future<Boolean> result : results) {
+				if (result.get()) {
+					linked++;
+				}
+			}
+			return linked;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	interface Task {
+		/**
+		 * @return true if the file was linked
+		 */
+		boolean run() throws IOException;
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.config.processlistener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Like {@link CopyDbFilesFromDirBeforeProcessStop}, but only copies files
+ * that changed since the last snapshot. Size, modification time and
+ * optionally a content hash of every file are kept in a manifest beside the
+ * destination.
+ */
+public class IncrementalCopyDbFilesFromDirBeforeProcessStop implements IMongoProcessListener {
+
+	private static Logger logger = LoggerFactory.getLogger(IncrementalCopyDbFilesFromDirBeforeProcessStop.class);
+
+	private final File _destination;
+	private final File _manifest;
+	private final boolean _compareContent;
+
+	public IncrementalCopyDbFilesFromDirBeforeProcessStop(File destination) {
+		this(destination, false);
+	}
+
+	/**
+	 * @param compareContent if true, files with unchanged size and modification time are compared by content hash
+	 */
+	public IncrementalCopyDbFilesFromDirBeforeProcessStop(File destination, boolean compareContent) {
+		_destination = destination;
+		_manifest = manifestOf(destination);
+		_compareContent = compareContent;
+	}
+
+	static File manifestOf(File destination) {
+		return new File(destination.getAbsoluteFile().getParentFile(), destination.getName() + ".manifest");
+	}
+
+	@Override
+	public void onBeforeProcessStart(File dbDir, boolean dbDirIsTemp) {
+	}
+
+	@Override
+	public void onAfterProcessStop(File dbDir, boolean dbDirIsTemp) {
+		try {
+			snapshot(dbDir.toPath(), _destination.toPath());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void snapshot(Path dbDir, Path destination) throws IOException {
+		Properties previous = readManifest();
+		Properties current = new Properties();
+		List<Path> changed = new ArrayList<>();
+
+		Files.walkFileTree(dbDir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Path relative = dbDir.relativize(file);
+				String key = relative.toString().replace(File.separatorChar, '/');
+				String state = attrs.size() + "," + attrs.lastModifiedTime().toMillis()
+						+ (_compareContent ? "," + sha256(file) : "");
+				current.setProperty(key, state);
+				if (!state.equals(previous.getProperty(key)) || !Files.exists(destination.resolve(relative))) {
+					changed.add(relative);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		DbFiles.copy(dbDir, destination, changed);
+
+		for (String key : previous.stringPropertyNames()) {
+			if (!current.containsKey(key)) {
+				Files.deleteIfExists(destination.resolve(key));
+			}
+		}
+
+		writeManifest(current);
+		logger.info("snapshot of {} into {}: {} of {} files changed", dbDir, destination, changed.size(), current.size());
+	}
+
+	private Properties readManifest() throws IOException {
+		Properties ret = new Properties();
+		if (_manifest.exists() && _destination.exists()) {
+			try (InputStream in = Files.newInputStream(_manifest.toPath())) {
+				ret.load(in);
+			}
+		}
+		return ret;
+	}
+
+	private void writeManifest(Properties manifest) throws IOException {
+		Path tmp = new File(_manifest.getPath() + ".tmp").toPath();
+		try (OutputStream out = Files.newOutputStream(tmp)) {
+			manifest.store(out, "db files of " + _destination);
+		}
+		Files.move(tmp, _manifest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static String sha256(Path file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream in = Files.newInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		for (byte b : digest.digest()) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+}
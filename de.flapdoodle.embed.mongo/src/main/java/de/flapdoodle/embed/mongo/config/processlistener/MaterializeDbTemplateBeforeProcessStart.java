@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.config.processlistener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.flapdoodle.embed.mongo.config.processlistener.DbFiles.CopyStrategy;
+
+/**
+ * Like {@link CopyDbFilesIntoDirBeforeProcessStart}, but materializes the
+ * template with a copy on write clone if the filesystem supports it, and
+ * falls back to hardlinks for immutable files and parallel copies for all
+ * other files.
+ */
+public class MaterializeDbTemplateBeforeProcessStart implements IMongoProcessListener {
+
+	private static Logger logger = LoggerFactory.getLogger(MaterializeDbTemplateBeforeProcessStart.class);
+
+	private final File _template;
+	private final Pattern _immutableFiles;
+	private volatile CopyStrategy _lastStrategy;
+
+	public MaterializeDbTemplateBeforeProcessStart(File template) {
+		this(template, DbFiles.DEFAULT_IMMUTABLE_FILES);
+	}
+
+	/**
+	 * @param immutableFiles names of files that are hardlinked if a clone is
+	 *            not possible, see {@link DbFiles} for when to link more than
+	 *            {@link DbFiles#DEFAULT_IMMUTABLE_FILES}
+	 */
+	public MaterializeDbTemplateBeforeProcessStart(File template, Pattern immutableFiles) {
+		_template = template;
+		_immutableFiles = immutableFiles;
+	}
+
+	@Override
+	public void onBeforeProcessStart(File dbDir, boolean dbDirIsTemp) {
+		try {
+			long start = System.currentTimeMillis();
+			_lastStrategy = DbFiles.cloneLinkOrCopy(_template, dbDir, _immutableFiles);
+			logger.info("materialized {} into {} with {} in {}ms", _template, dbDir, _lastStrategy, System.currentTimeMillis() - start);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void onAfterProcessStop(File dbDir, boolean dbDirIsTemp) {
+	}
+
+	/**
+	 * @return strategy used for the last start, null if not started yet
+	 */
+	public CopyStrategy lastStrategy() {
+		return _lastStrategy;
+	}
+}
@@ -40,9 +40,17 @@ public class ProcessListenerBuilder extends AbstractBuilder<IMongoProcessListene
 		return add(new CopyDbFilesFromDirBeforeProcessStop(destination));
 	}
 	
+	public ProcessListenerBuilder copyChangedDbFilesBeforeStopInto(File destination) {
+		return add(new IncrementalCopyDbFilesFromDirBeforeProcessStop(destination));
+	}
+
 	public ProcessListenerBuilder copyFilesIntoDbDirBeforeStarFrom(File source) {
 		return add(new CopyDbFilesIntoDirBeforeProcessStart(source));
 	}
+
+	public ProcessListenerBuilder materializeDbTemplateBeforeStartFrom(File template) {
+		return add(new MaterializeDbTemplateBeforeProcessStart(template));
+	}
 	
 	@Override
 	public IMongoProcessListener build() {
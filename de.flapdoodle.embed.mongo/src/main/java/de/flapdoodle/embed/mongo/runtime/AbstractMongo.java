@@ -42,6 +42,10 @@ public class AbstractMongo {
 			ret.add("--bind_ip");
 			ret.add(net.getBindIp());
 		}
+		if (net.isUnixSocket()) {
+			ret.add("--unixSocketPrefix");
+			ret.add(net.getUnixSocketPrefix().getAbsolutePath());
+		}
 	}
 
 }
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import de.flapdoodle.embed.process.runtime.IStopable;
+
+/**
+ * Runs blocking starts on another thread. The returned future completes as
+ * soon as the readiness check of the process succeeded, or exceptionally
+ * with the exception thrown by the start.
+ * <p>
+ * Cancelling the future does not interrupt a running start. A start that was
+ * not run yet is skipped, a process that gets ready after the cancel is
+ * stopped, so nothing is left running without an owner.
+ */
+public abstract class AsyncStart {
+
+	private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+	private AsyncStart() {
+		// no instance
+	}
+
+	/**
+	 * uses a shared pool of daemon threads, so a forgotten future does not keep the jvm alive
+	 */
+	public static <T> CompletableFuture<T> start(Callable<T> start) {
+		return start(start, DEFAULT_EXECUTOR);
+	}
+
+	public static <T> CompletableFuture<T> start(final Callable<T> start, Executor executor) {
+		return start(start, result -> {
+		}, executor);
+	}
+
+	/**
+	 * like {@link #start(Callable)}, stops a process that gets ready after the
+	 * future was cancelled
+	 */
+	public static <T extends IStopable> CompletableFuture<T> startProcess(Callable<T> start) {
+		return startProcess(start, DEFAULT_EXECUTOR);
+	}
+
+	public static <T extends IStopable> CompletableFuture<T> startProcess(Callable<T> start, Executor executor) {
+		return start(start, IStopable::stop, executor);
+	}
+
+	/**
+	 * @param stopIfCancelled called with the result of a start that finished
+	 *            after the future was cancelled
+	 */
+	public static <T> CompletableFuture<T> start(final Callable<T> start, final Consumer<? super T> stopIfCancelled,
+			Executor executor) {
+		final CompletableFuture<T> ret = new CompletableFuture<>();
+		executor.execute(() -> {
+			if (ret.isDone()) {
+				return;
+			}
+			try {
+				T result = start.call();
+				if (!ret.complete(result)) {
+					stopIfCancelled.accept(result);
+				}
+			} catch (Exception | Error e) {
+				ret.completeExceptionally(e);
+			}
+		});
+		return ret;
+	}
+
+	/**
+	 * Prepares and starts on a daemon thread. The prepared executable is
+	 * stopped if the start fails or the future was cancelled, the caller never
+	 * sees it and could not clean it up.
+	 */
+	public static <E, T> CompletableFuture<T> prepareAndStart(final Callable<E> prepare, final IStart<E, T> start,
+			final Consumer<? super E> stop) {
+		final AtomicReference<E> prepared = new AtomicReference<>();
+		return start(() -> {
+			E executable = prepare.call();
+			prepared.set(executable);
+			try {
+				return start.start(executable);
+			} catch (Exception | Error e) {
+				stop.accept(executable);
+				throw e;
+			}
+		}, result -> stop.accept(prepared.get()), DEFAULT_EXECUTOR);
+	}
+
+	public interface IStart<E, T> {
+		T start(E executable) throws IOException;
+	}
+
+	static class DaemonThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "embedmongo-start-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
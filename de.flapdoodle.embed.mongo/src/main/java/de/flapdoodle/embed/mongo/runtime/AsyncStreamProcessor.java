@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.flapdoodle.embed.process.io.IStreamProcessor;
+
+/**
+ * Decouples reading the output of a process from a slow destination, e.g. a
+ * logger writing to a network file system. Lines are put into a bounded queue
+ * and passed on in batches by a writer thread, so the reader can drain the
+ * pipe and the process never blocks on write.
+ *
+ * If the queue is full, lines are either dropped and counted or the reader
+ * blocks, see {@link OverflowPolicy}. The writer thread stops after it was
+ * idle for a while and is started again with the next line.
+ */
+public class AsyncStreamProcessor implements IStreamProcessor {
+
+	public static final int DEFAULT_CAPACITY = 8192;
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	private static final long IDLE_TIMEOUT_IN_MS = 1000;
+	private static final Object END = new Object();
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+	public enum OverflowPolicy {
+		/**
+		 * drop the line, the process never waits for the destination
+		 */
+		DROP,
+		/**
+		 * wait for free space, nothing is lost
+		 */
+		BLOCK
+	}
+
+	private final IStreamProcessor destination;
+	private final OverflowPolicy overflowPolicy;
+	private final int batchSize;
+	private final BlockingQueue<Object> queue;
+	private final AtomicBoolean writerRunning = new AtomicBoolean(false);
+	private final AtomicLong droppedLines = new AtomicLong();
+	private long reportedDroppedLines = 0;
+
+	public AsyncStreamProcessor(IStreamProcessor destination) {
+		this(destination, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, OverflowPolicy.DROP);
+	}
+
+	/**
+	 * @param capacity lines buffered before the overflow policy applies
+	 * @param batchSize lines passed to the destination per wakeup of the writer
+	 */
+	public AsyncStreamProcessor(IStreamProcessor destination, int capacity, int batchSize, OverflowPolicy overflowPolicy) {
+		if (capacity < 1 || batchSize < 1) {
+			throw new IllegalArgumentException("capacity and batchSize must be at least 1");
+		}
+		this.destination = destination;
+		this.overflowPolicy = overflowPolicy;
+		this.batchSize = batchSize;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+	}
+
+	@Override
+	public void process(String block) {
+		if (overflowPolicy == OverflowPolicy.BLOCK) {
+			if (!put(block)) {
+				droppedLines.incrementAndGet();
+			}
+		} else if (!queue.offer(block)) {
+			droppedLines.incrementAndGet();
+		}
+		startWriterIfNeeded();
+	}
+
+	/**
+	 * Passed on after all lines before it, the end of one process output
+	 * must not be lost even if lines are dropped.
+	 */
+	@Override
+	public void onProcessed() {
+		put(END);
+		startWriterIfNeeded();
+	}
+
+	/**
+	 * @return lines dropped so far because the queue was full
+	 */
+	public long droppedLines() {
+		return droppedLines.get();
+	}
+
+	private boolean put(Object element) {
+		try {
+			queue.put(element);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private void startWriterIfNeeded() {
+		if (writerRunning.compareAndSet(false, true)) {
+			Thread writer = new Thread(this::writeBatches, "embedmongo-output-" + THREAD_COUNTER.incrementAndGet());
+			writer.setDaemon(true);
+			writer.start();
+		}
+	}
+
+	private void writeBatches() {
+		List<Object> batch = new ArrayList<>(batchSize);
+		try {
+			while (true) {
+				Object first = queue.poll(IDLE_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					writerRunning.set(false);
+					// a line may have been queued while no writer was marked as running
+					if (queue.isEmpty() || !writerRunning.compareAndSet(false, true)) {
+						return;
+					}
+					continue;
+				}
+				batch.add(first);
+				queue.drainTo(batch, batchSize - 1);
+				reportDroppedLines();
+				for (Object element : batch) {
+					if (element == END) {
+						destination.onProcessed();
+					} else {
+						destination.process((String) element);
+					}
+				}
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			writerRunning.set(false);
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			writerRunning.set(false);
+			throw e;
+		}
+	}
+
+	private void reportDroppedLines() {
+		long dropped = droppedLines.get();
+		if (dropped > reportedDroppedLines) {
+			destination.process("[" + (dropped - reportedDroppedLines) + " lines dropped, output was too slow]\n");
+			reportedDroppedLines = dropped;
+		}
+	}
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+/**
+ * Gets the phase durations of process starts, e.g. to feed them into a
+ * metrics library.
+ *
+ * @see StartupTimings#addListener(IStartupTimingListener)
+ */
+public interface IStartupTimingListener {
+
+	/**
+	 * Called for every started process and for every prepared executable,
+	 * the latter only contains {@link StartupTimings.Phase#ARTIFACT}. Called
+	 * on the starting thread, so it should return quickly.
+	 */
+	void onStartupTimings(StartupTimings timings);
+
+}
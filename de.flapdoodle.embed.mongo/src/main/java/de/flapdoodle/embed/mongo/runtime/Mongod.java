@@ -65,17 +65,23 @@ public class Mongod extends AbstractMongo {
 			0x64, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x1B, 0x00, 0x00,
 			0x00, 0x10, 0x73, 0x68, 0x75, 0x74, 0x64, 0x6F, 0x77, 0x6E, 0x00, 0x01, 0x00, 0x00, 0x00, 0x08, 0x66, 0x6F,
 			0x72, 0x63, 0x65, 0x00, 0x01, 0x00, 0x05, 0x00, 0x00, 0x00, 0x00 };
+	/**
+	 * Binary sample of isMaster command (OP_QUERY on admin.$cmd)
+	 */
+	static final byte[] IS_MASTER_COMMAND = { 0x3A, 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+			(byte) 0xD4, 0x07, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x61, 0x64, 0x6D, 0x69, 0x6E, 0x2E, 0x24, 0x63, 0x6D,
+			0x64, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x13, 0x00, 0x00,
+			0x00, 0x10, 0x69, 0x73, 0x4D, 0x61, 0x73, 0x74, 0x65, 0x72, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00 };
+	static final int OP_REPLY = 1;
+	static final int MESSAGE_HEADER_LENGTH = 16;
+	static final int OP_CODE_OFFSET = 12;
 	public static final int SOCKET_TIMEOUT = 2000;
 	public static final int CONNECT_TIMEOUT = 2000;
 	public static final int BYTE_BUFFER_LENGTH = 512;
 	public static final int WAITING_TIME_SHUTDOWN_IN_MS = 100;
 
 	public static boolean sendShutdown(InetAddress hostname, int port) {
-		if (!hostname.isLoopbackAddress()) {
-			logger.warn("---------------------------------------\n"
-					+ "Your localhost ({}) is not a loopback adress\n"
-					+ "We can NOT send shutdown to mongod, because it is denied from remote.\n"
-					+ "---------------------------------------\n", hostname.getHostAddress());
+		if (!isLoopback(hostname)) {
 			return false;
 		}
 
@@ -112,9 +118,81 @@ public class Mongod extends AbstractMongo {
 		return false;
 	}
 
+	/**
+	 * Sends the shutdown command without waiting for an answer, the caller
+	 * should wait for the process to exit.
+	 *
+	 * @return true if the command was sent
+	 */
+	public static boolean sendShutdownCommand(InetAddress hostname, int port) {
+		if (!isLoopback(hostname)) {
+			return false;
+		}
+		try (Socket s = new Socket()) {
+			s.connect(new InetSocketAddress(hostname, port), CONNECT_TIMEOUT);
+			OutputStream outputStream = s.getOutputStream();
+			outputStream.write(SHUTDOWN_COMMAND);
+			outputStream.flush();
+			return true;
+		} catch (IOException iox) {
+			logger.warn("sendShutdownCommand {}:{}", hostname, port, iox);
+			return false;
+		}
+	}
+
+	private static boolean isLoopback(InetAddress hostname) {
+		if (!hostname.isLoopbackAddress()) {
+			logger.warn("---------------------------------------\n"
+					+ "Your localhost ({}) is not a loopback adress\n"
+					+ "We can NOT send shutdown to mongod, because it is denied from remote.\n"
+					+ "---------------------------------------\n", hostname.getHostAddress());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if a server on this port answered an isMaster command
+	 */
+	public static boolean sendIsMaster(InetAddress hostname, int port) {
+		try (Socket s = new Socket()) {
+			s.setSoTimeout(SOCKET_TIMEOUT);
+			s.connect(new InetSocketAddress(hostname, port), CONNECT_TIMEOUT);
+			OutputStream outputStream = s.getOutputStream();
+			outputStream.write(IS_MASTER_COMMAND);
+			outputStream.flush();
+
+			byte[] header = new byte[MESSAGE_HEADER_LENGTH];
+			InputStream inputStream = s.getInputStream();
+			int read = 0;
+			while (read < header.length) {
+				int count = inputStream.read(header, read, header.length - read);
+				if (count == -1) {
+					return false;
+				}
+				read += count;
+			}
+			return littleEndianInt(header, OP_CODE_OFFSET) == OP_REPLY;
+		} catch (IOException iox) {
+			logger.trace("sendIsMaster {}:{}", hostname, port, iox);
+			return false;
+		}
+	}
+
+	private static int littleEndianInt(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xFF)
+				| (buffer[offset + 1] & 0xFF) << 8
+				| (buffer[offset + 2] & 0xFF) << 16
+				| (buffer[offset + 3] & 0xFF) << 24;
+	}
+
+	/**
+	 * group 1 is the process id
+	 */
+	public static final Pattern PROCESS_ID_PATTERN = Pattern.compile("MongoDB starting : pid=([1234567890]+) port", Pattern.MULTILINE);
+
 	public static int getMongodProcessId(String output, int defaultValue) {
-		Pattern pattern = Pattern.compile("MongoDB starting : pid=([1234567890]+) port", Pattern.MULTILINE);
-		Matcher matcher = pattern.matcher(output);
+		Matcher matcher = PROCESS_ID_PATTERN.matcher(output);
 		if (matcher.find()) {
 			String value = matcher.group(1);
 			return Integer.valueOf(value);
@@ -165,6 +243,10 @@ public class Mongod extends AbstractMongo {
 				ret.add("--storageEngine");
 				ret.add(config.cmdOptions().storageEngine());
 			}
+			if (config.cmdOptions().wiredTigerCacheSizeGB() != null) {
+				ret.add("--wiredTigerCacheSizeGB");
+				ret.add(String.valueOf(config.cmdOptions().wiredTigerCacheSizeGB()));
+			}
 		}
 
 		if (config.cmdOptions().isVerbose()) {
@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import java.io.IOException;
+
+/**
+ * The process could not start because another process bound its port first.
+ * Starting again on another port will most likely succeed.
+ */
+public class PortAlreadyInUseException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int port;
+
+	public PortAlreadyInUseException(int port, String message) {
+		super(message);
+		this.port = port;
+	}
+
+	public int getPort() {
+		return port;
+	}
+}
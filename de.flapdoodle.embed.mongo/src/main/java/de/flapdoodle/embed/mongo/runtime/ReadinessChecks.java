@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.flapdoodle.embed.mongo.config.Net;
+
+public abstract class ReadinessChecks {
+
+	private static Logger logger = LoggerFactory.getLogger(ReadinessChecks.class);
+
+	public static final long DEFAULT_POLL_INTERVAL_IN_MS = 25;
+
+	private ReadinessChecks() {
+		// no instance
+	}
+
+	/**
+	 * ready as soon as the process logs "waiting for connections on port"
+	 */
+	public static IReadinessCheck logMessage() {
+		return new LogMessage();
+	}
+
+	/**
+	 * ready as soon as the process answers an isMaster command on its port
+	 */
+	public static IReadinessCheck wireProtocol() {
+		return wireProtocol(DEFAULT_POLL_INTERVAL_IN_MS);
+	}
+
+	public static IReadinessCheck wireProtocol(long pollIntervalInMs) {
+		return new WireProtocol(pollIntervalInMs);
+	}
+
+	static class LogMessage implements IReadinessCheck {
+
+		@Override
+		public boolean waitForReadiness(Net net, StartupLogWatch logWatch, long timeoutInMs) {
+			logWatch.waitForResult(timeoutInMs);
+			return logWatch.isInitWithSuccess();
+		}
+	}
+
+	static class WireProtocol implements IReadinessCheck {
+
+		private final long pollIntervalInMs;
+
+		WireProtocol(long pollIntervalInMs) {
+			this.pollIntervalInMs = pollIntervalInMs;
+		}
+
+		@Override
+		public boolean waitForReadiness(Net net, StartupLogWatch logWatch, long timeoutInMs) {
+			InetAddress serverAddress;
+			try {
+				serverAddress = net.getServerAddress();
+			} catch (UnknownHostException e) {
+				logger.warn("could not resolve server address, wait for log message", e);
+				return new LogMessage().waitForReadiness(net, logWatch, timeoutInMs);
+			}
+
+			long deadline = System.currentTimeMillis() + timeoutInMs;
+			while (true) {
+				if (Mongod.sendIsMaster(serverAddress, net.getPort())) {
+					return true;
+				}
+				if (logWatch.isInitWithSuccess()) {
+					return true;
+				}
+				if (logWatch.getFailureFound() != null || logWatch.isFinished()) {
+					return false;
+				}
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return false;
+				}
+				// returns early if a failure shows up in the log
+				logWatch.waitForResult(Math.min(pollIntervalInMs, remaining));
+			}
+		}
+	}
+}
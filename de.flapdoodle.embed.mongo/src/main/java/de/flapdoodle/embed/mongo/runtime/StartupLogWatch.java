@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.flapdoodle.embed.process.io.IStreamProcessor;
+
+/**
+ * Watches the line wise output of a starting process for a success or a
+ * failure message and passes every line on to a destination.
+ *
+ * Markers are matched line by line as the output arrives. Only the last
+ * lines, at most maxOutputSize chars, are kept for error messages, and none
+ * after {@link #discardOutput()} is called, so memory stays flat no matter how
+ * much the process logs.
+ */
+public class StartupLogWatch implements IStreamProcessor {
+
+	public static final int DEFAULT_MAX_OUTPUT_SIZE = 64 * 1024;
+
+	private final String success;
+	private final Set<String> failures;
+	private final Pattern processIdPattern;
+	private final int maxOutputSize;
+	private final IStreamProcessor destination;
+
+	private final Object mutex = new Object();
+
+	private Deque<String> output = new ArrayDeque<>();
+	private int outputSize = 0;
+	private boolean outputTruncated = false;
+	private boolean initWithSuccess = false;
+	private String failureFound = null;
+	private boolean finished = false;
+	private int processId = -1;
+
+	public StartupLogWatch(String success, Set<String> failures, IStreamProcessor destination) {
+		this(success, failures, null, DEFAULT_MAX_OUTPUT_SIZE, destination);
+	}
+
+	/**
+	 * @param processIdPattern group 1 is the process id, may be null
+	 * @param maxOutputSize chars of the latest output kept until the output is discarded
+	 */
+	public StartupLogWatch(String success, Set<String> failures, Pattern processIdPattern, int maxOutputSize,
+			IStreamProcessor destination) {
+		this.success = success;
+		this.failures = new LinkedHashSet<>(failures);
+		this.processIdPattern = processIdPattern;
+		this.maxOutputSize = maxOutputSize;
+		this.destination = destination;
+	}
+
+	@Override
+	public void process(String line) {
+		synchronized (mutex) {
+			if (output != null) {
+				append(line);
+			}
+			if (processId == -1 && processIdPattern != null) {
+				Matcher matcher = processIdPattern.matcher(line);
+				if (matcher.find()) {
+					processId = Integer.parseInt(matcher.group(1));
+				}
+			}
+			if (!initWithSuccess && failureFound == null) {
+				if (line.contains(success)) {
+					initWithSuccess = true;
+					mutex.notifyAll();
+				} else {
+					for (String failure : failures) {
+						if (line.contains(failure)) {
+							failureFound = line;
+							mutex.notifyAll();
+							break;
+						}
+					}
+				}
+			}
+		}
+		destination.process(line);
+	}
+
+	private void append(String line) {
+		output.addLast(line);
+		outputSize += line.length();
+		while (outputSize > maxOutputSize && output.size() > 1) {
+			outputSize -= output.removeFirst().length();
+			outputTruncated = true;
+		}
+	}
+
+	@Override
+	public void onProcessed() {
+		synchronized (mutex) {
+			finished = true;
+			mutex.notifyAll();
+		}
+		destination.onProcessed();
+	}
+
+	/**
+	 * Blocks until a success or failure message was found, the output ended or
+	 * the timeout is reached.
+	 */
+	public void waitForResult(long timeoutInMs) {
+		long deadline = System.currentTimeMillis() + timeoutInMs;
+		synchronized (mutex) {
+			try {
+				long remaining = timeoutInMs;
+				while (!initWithSuccess && failureFound == null && !finished && remaining > 0) {
+					mutex.wait(remaining);
+					remaining = deadline - System.currentTimeMillis();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public boolean isInitWithSuccess() {
+		synchronized (mutex) {
+			return initWithSuccess;
+		}
+	}
+
+	public String getFailureFound() {
+		synchronized (mutex) {
+			return failureFound;
+		}
+	}
+
+	public boolean isFinished() {
+		synchronized (mutex) {
+			return finished;
+		}
+	}
+
+	/**
+	 * @return the process id found in the output, defaultValue if none was found
+	 */
+	public int getProcessId(int defaultValue) {
+		synchronized (mutex) {
+			return processId != -1 ? processId : defaultValue;
+		}
+	}
+
+	/**
+	 * @return the latest output, empty if it was already discarded
+	 */
+	public String getOutput() {
+		synchronized (mutex) {
+			if (output == null) {
+				return "";
+			}
+			StringBuilder sb = new StringBuilder(outputSize);
+			for (String line : output) {
+				sb.append(line);
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * @return true if older lines were dropped to stay within maxOutputSize
+	 */
+	public boolean isOutputTruncated() {
+		synchronized (mutex) {
+			return outputTruncated;
+		}
+	}
+
+	/**
+	 * Stops collecting the output, lines are still passed to the destination.
+	 */
+	public void discardOutput() {
+		synchronized (mutex) {
+			output = null;
+			outputSize = 0;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Durations of the phases of one process start. Every start is reported to
+ * the listeners registered with {@link #addListener(IStartupTimingListener)},
+ * e.g. {@link StartupTimingsJmx}.
+ */
+public class StartupTimings {
+
+	private static Logger logger = LoggerFactory.getLogger(StartupTimings.class);
+
+	private static final List<IStartupTimingListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+	public enum Phase {
+		/**
+		 * artifact lookup, download if missing, extraction and copy of the
+		 * executable, measured in prepare, before the process exists
+		 */
+		ARTIFACT,
+		/**
+		 * creation of the db dir
+		 */
+		DB_DIR,
+		/**
+		 * command line and process listeners, e.g. copying db files into the db dir
+		 */
+		BEFORE_START,
+		/**
+		 * spawning the process
+		 */
+		SPAWN,
+		/**
+		 * waiting for the readiness check
+		 */
+		READINESS
+	}
+
+	private final String name;
+	private final Map<Phase, Long> durations;
+	private final boolean ready;
+
+	public StartupTimings(String name, Map<Phase, Long> durations, boolean ready) {
+		this.name = name;
+		this.durations = Collections.unmodifiableMap(new EnumMap<>(durations));
+		this.ready = ready;
+	}
+
+	/**
+	 * @return simple class name of the started process, e.g. MongodProcess
+	 */
+	public String name() {
+		return name;
+	}
+
+	/**
+	 * @return duration in ms of each recorded phase
+	 */
+	public Map<Phase, Long> durations() {
+		return durations;
+	}
+
+	/**
+	 * @return sum of all recorded phases in ms
+	 */
+	public long total() {
+		long ret = 0;
+		for (long duration : durations.values()) {
+			ret += duration;
+		}
+		return ret;
+	}
+
+	/**
+	 * @return false if the process did not get ready
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	@Override
+	public String toString() {
+		return name + (ready ? "" : " (not ready)") + " " + durations + " total=" + total() + "ms";
+	}
+
+	public static void addListener(IStartupTimingListener listener) {
+		LISTENERS.add(listener);
+	}
+
+	public static void removeListener(IStartupTimingListener listener) {
+		LISTENERS.remove(listener);
+	}
+
+	public static void publish(StartupTimings timings) {
+		logger.debug("startup timings {}", timings);
+		for (IStartupTimingListener listener : LISTENERS) {
+			try {
+				listener.onStartupTimings(timings);
+			} catch (RuntimeException e) {
+				logger.warn("startup timing listener {} failed", listener, e);
+			}
+		}
+	}
+
+	/**
+	 * Measures consecutive phases, each phase ends where the next begins.
+	 */
+	public static class Recorder {
+
+		private final String name;
+		private final Map<Phase, Long> durations = new EnumMap<>(Phase.class);
+		private long last = System.nanoTime();
+
+		public Recorder(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Ends the given phase, it started with the end of the last one.
+		 */
+		public void done(Phase phase) {
+			long now = System.nanoTime();
+			durations.merge(phase, (now - last) / 1000000, Long::sum);
+			last = now;
+		}
+
+		public StartupTimings build(boolean ready) {
+			return new StartupTimings(name, durations, ready);
+		}
+	}
+}
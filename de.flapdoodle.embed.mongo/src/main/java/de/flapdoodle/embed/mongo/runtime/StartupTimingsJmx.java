@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import de.flapdoodle.embed.mongo.runtime.StartupTimings.Phase;
+
+/**
+ * Collects startup timings and exposes them as MXBean, see
+ * {@link #register()}.
+ */
+public class StartupTimingsJmx implements IStartupTimingListener, StartupTimingsMXBean {
+
+	public static final String OBJECT_NAME = "de.flapdoodle.embed.mongo:type=StartupTimings";
+
+	static final String TOTAL = "TOTAL";
+
+	private static final int SAMPLES = 1024;
+
+	private final Map<String, Samples> samples = new HashMap<>();
+	private long starts = 0;
+	private long failedStarts = 0;
+
+	/**
+	 * Registers a new instance as listener and at the platform MBean server.
+	 */
+	public static StartupTimingsJmx register() throws JMException {
+		StartupTimingsJmx ret = new StartupTimingsJmx();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if (server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+		server.registerMBean(ret, name);
+		StartupTimings.addListener(ret);
+		return ret;
+	}
+
+	/**
+	 * Removes the instance registered with {@link #register()}.
+	 */
+	public static void unregister(StartupTimingsJmx instance) throws JMException {
+		StartupTimings.removeListener(instance);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if (server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+	}
+
+	@Override
+	public synchronized void onStartupTimings(StartupTimings timings) {
+		for (Map.Entry<Phase, Long> duration : timings.durations().entrySet()) {
+			samplesOf(duration.getKey().name()).add(duration.getValue());
+		}
+		if (timings.durations().containsKey(Phase.ARTIFACT) && timings.durations().size() == 1) {
+			// a prepare, not a start
+			return;
+		}
+		starts++;
+		if (!timings.isReady()) {
+			failedStarts++;
+		}
+		samplesOf(TOTAL).add(timings.total());
+	}
+
+	@Override
+	public synchronized long getStarts() {
+		return starts;
+	}
+
+	@Override
+	public synchronized long getFailedStarts() {
+		return failedStarts;
+	}
+
+	@Override
+	public synchronized Map<String, Long> getLastInMs() {
+		Map<String, Long> ret = new LinkedHashMap<>();
+		samples.forEach((key, value) -> ret.put(key, value.last()));
+		return ret;
+	}
+
+	@Override
+	public synchronized Map<String, Long> getMaxInMs() {
+		Map<String, Long> ret = new LinkedHashMap<>();
+		samples.forEach((key, value) -> ret.put(key, value.max));
+		return ret;
+	}
+
+	@Override
+	public Map<String, Long> getP50InMs() {
+		return percentile(50);
+	}
+
+	@Override
+	public Map<String, Long> getP95InMs() {
+		return percentile(95);
+	}
+
+	@Override
+	public Map<String, Long> getP99InMs() {
+		return percentile(99);
+	}
+
+	@Override
+	public synchronized void reset() {
+		samples.clear();
+		starts = 0;
+		failedStarts = 0;
+	}
+
+	private synchronized Map<String, Long> percentile(int percent) {
+		Map<String, Long> ret = new LinkedHashMap<>();
+		samples.forEach((key, value) -> ret.put(key, value.percentile(percent)));
+		return ret;
+	}
+
+	private Samples samplesOf(String key) {
+		return samples.computeIfAbsent(key, k -> new Samples());
+	}
+
+	/**
+	 * ring of the latest durations
+	 */
+	static class Samples {
+
+		private final long[] values = new long[SAMPLES];
+		private int count = 0;
+		private long max = 0;
+
+		void add(long value) {
+			values[count % SAMPLES] = value;
+			count++;
+			max = Math.max(max, value);
+		}
+
+		long last() {
+			return count > 0 ? values[(count - 1) % SAMPLES] : 0;
+		}
+
+		long percentile(int percent) {
+			int size = Math.min(count, SAMPLES);
+			if (size == 0) {
+				return 0;
+			}
+			long[] sorted = Arrays.copyOf(values, size);
+			Arrays.sort(sorted);
+			int index = (int) Math.ceil(percent / 100.0 * size) - 1;
+			return sorted[Math.max(0, Math.min(index, size - 1))];
+		}
+	}
+}
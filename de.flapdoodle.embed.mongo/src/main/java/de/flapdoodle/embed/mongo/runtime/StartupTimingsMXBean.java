@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import java.util.Map;
+
+/**
+ * Startup phase durations of all processes started in this JVM, keyed by
+ * phase name and TOTAL. Percentiles are computed over the latest starts.
+ */
+public interface StartupTimingsMXBean {
+
+	long getStarts();
+
+	long getFailedStarts();
+
+	Map<String, Long> getLastInMs();
+
+	Map<String, Long> getMaxInMs();
+
+	Map<String, Long> getP50InMs();
+
+	Map<String, Long> getP95InMs();
+
+	Map<String, Long> getP99InMs();
+
+	void reset();
+}
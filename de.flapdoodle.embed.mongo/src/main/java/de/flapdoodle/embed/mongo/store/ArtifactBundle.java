@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.store;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Single file with already extracted executables, for builds without network
+ * access. The file starts with an uncompressed index, followed by the file
+ * contents, each aligned to a page, so they can be memory mapped and copied
+ * without any decompression.
+ *
+ * <pre>
+ * magic            8 bytes "EMBMONGO"
+ * format version   int
+ * entry count      int
+ * entries          utf key, long offset, long length
+ * contents         page aligned
+ * </pre>
+ *
+ * A key is the download path of the archive and the destination of the file,
+ * separated by {@link #KEY_SEPARATOR}.
+ *
+ * @see ArtifactBundleWriter
+ */
+public class ArtifactBundle implements AutoCloseable {
+
+	static final byte[] MAGIC = "EMBMONGO".getBytes(StandardCharsets.US_ASCII);
+	static final int FORMAT_VERSION = 1;
+	static final int ALIGNMENT = 4096;
+
+	public static final String KEY_SEPARATOR = "!";
+
+	private final File file;
+	private final FileChannel channel;
+	private final Map<String, long[]> index;
+
+	private ArtifactBundle(File file, FileChannel channel, Map<String, long[]> index) {
+		this.file = file;
+		this.channel = channel;
+		this.index = index;
+	}
+
+	public static ArtifactBundle open(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			// the channel must stay open, so the stream is not closed
+			DataInputStream in = new DataInputStream(nonClosing(Channels.newInputStream(channel)));
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(MAGIC, magic)) {
+				throw new IOException(file + " is not an artifact bundle");
+			}
+			int formatVersion = in.readInt();
+			if (formatVersion != FORMAT_VERSION) {
+				throw new IOException("unsupported bundle format " + formatVersion + " in " + file);
+			}
+			int count = in.readInt();
+			Map<String, long[]> index = new LinkedHashMap<>();
+			for (int i = 0; i < count; i++) {
+				String key = in.readUTF();
+				index.put(key, new long[] { in.readLong(), in.readLong() });
+			}
+			return new ArtifactBundle(file, channel, index);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public static String keyOf(String archivePath, String destination) {
+		return archivePath + KEY_SEPARATOR + destination;
+	}
+
+	public File file() {
+		return file;
+	}
+
+	public Set<String> keys() {
+		return Collections.unmodifiableSet(index.keySet());
+	}
+
+	public boolean contains(String key) {
+		return index.containsKey(key);
+	}
+
+	/**
+	 * @return read only mapping of the content
+	 */
+	public MappedByteBuffer content(String key) throws IOException {
+		long[] position = index.get(key);
+		if (position == null) {
+			throw new IOException(key + " not found in " + file);
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position[0], position[1]);
+	}
+
+	/**
+	 * writes the content to an executable file
+	 */
+	public File copyTo(String key, File destination) throws IOException {
+		ByteBuffer content = content(key);
+		try (FileChannel out = FileChannel.open(destination.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (content.hasRemaining()) {
+				out.write(content);
+			}
+		}
+		if (!destination.setExecutable(true)) {
+			throw new IOException("could not make " + destination + " executable");
+		}
+		return destination;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private static InputStream nonClosing(final InputStream in) {
+		return new FilterInputStream(in) {
+			@Override
+			public void close() {
+				// keep the channel open
+			}
+		};
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.flapdoodle.embed.process.config.store.FileSet;
+import de.flapdoodle.embed.process.distribution.ArchiveType;
+
+/**
+ * Writes an {@link ArtifactBundle}.
+ */
+public class ArtifactBundleWriter {
+
+	private final Map<String, File> files = new LinkedHashMap<>();
+
+	/**
+	 * adds a file under the key {@link ArtifactBundle#keyOf(String, String)}
+	 */
+	public ArtifactBundleWriter add(String archivePath, String destination, File file) {
+		files.put(ArtifactBundle.keyOf(archivePath, destination), file);
+		return this;
+	}
+
+	/**
+	 * extracts the entries from the archive into workDir and adds them
+	 */
+	public ArtifactBundleWriter addArchive(String archivePath, File archive, ArchiveType archiveType,
+			List<FileSet.Entry> entries, File workDir) throws IOException {
+		File dir = new File(workDir, archivePath.replaceAll("[^a-zA-Z0-9._-]", "_"));
+		for (Map.Entry<FileSet.Entry, File> extracted : StreamingExtractor.extract(archive, archiveType, dir, entries).entrySet()) {
+			add(archivePath, extracted.getKey().destination(), extracted.getValue());
+		}
+		return this;
+	}
+
+	public void writeTo(File bundle) throws IOException {
+		ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+		try (DataOutputStream index = new DataOutputStream(indexBytes)) {
+			index.write(ArtifactBundle.MAGIC);
+			index.writeInt(ArtifactBundle.FORMAT_VERSION);
+			index.writeInt(files.size());
+			// offsets depend on the index size, which does not depend on the offsets
+			long offset = align(headerSize());
+			for (Map.Entry<String, File> file : files.entrySet()) {
+				index.writeUTF(file.getKey());
+				index.writeLong(offset);
+				index.writeLong(file.getValue().length());
+				offset = align(offset + file.getValue().length());
+			}
+		}
+
+		File tmp = new File(bundle.getPath() + ".tmp");
+		try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			out.write(ByteBuffer.wrap(indexBytes.toByteArray()));
+			long offset = align(indexBytes.size());
+			for (File file : files.values()) {
+				try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+					long size = in.size();
+					long position = 0;
+					while (position < size) {
+						position += in.transferTo(position, size - position, out.position(offset + position));
+					}
+				}
+				offset = align(offset + file.length());
+			}
+		}
+		Files.move(tmp.toPath(), bundle.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private long headerSize() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream index = new DataOutputStream(bytes)) {
+			index.write(ArtifactBundle.MAGIC);
+			index.writeInt(ArtifactBundle.FORMAT_VERSION);
+			index.writeInt(files.size());
+			for (String key : files.keySet()) {
+				index.writeUTF(key);
+				index.writeLong(0);
+				index.writeLong(0);
+			}
+		}
+		return bytes.size();
+	}
+
+	private static long align(long offset) {
+		return (offset + ArtifactBundle.ALIGNMENT - 1) / ArtifactBundle.ALIGNMENT * ArtifactBundle.ALIGNMENT;
+	}
+}
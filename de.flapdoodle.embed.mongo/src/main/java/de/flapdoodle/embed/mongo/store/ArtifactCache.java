@@ -0,0 +1,547 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.store;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content addressed cache for downloaded archives and the files extracted from
+ * them. Archives are stored by their sha256 hash below objects/, a refs file
+ * maps the download path of an archive to its hash. Every access updates the
+ * last use timestamp of an object, and the least recently used objects are
+ * evicted as soon as the cache grows beyond its size limit.
+ *
+ * Layout below the root directory:
+ * <pre>
+ * refs.properties         download path = hash
+ * objects/&lt;hash&gt;.archive  the archive
+ * objects/&lt;hash&gt;.d/       files extracted from the archive
+ * objects/&lt;hash&gt;.used     modification time is the last use
+ * objects/&lt;hash&gt;.pins/    one locked file per running user of the extracted files
+ * </pre>
+ *
+ * Use {@link #use(String, IFetch, IUse)} to work with an entry, it can not be
+ * evicted while the action runs. Extracted files used after that, e.g. by a
+ * running process, are protected with a {@link Pin}.
+ */
+public class ArtifactCache {
+
+	private static Logger logger = LoggerFactory.getLogger(ArtifactCache.class);
+
+	public static final long UNLIMITED = Long.MAX_VALUE;
+
+	static final String REFS_FILE = "refs.properties";
+	static final String LOCK_FILE = "cache.lock";
+	static final String OBJECTS_DIR = "objects";
+	static final String ARCHIVE_SUFFIX = ".archive";
+	static final String EXTRACTED_SUFFIX = ".d";
+	static final String USED_SUFFIX = ".used";
+	static final String PINS_SUFFIX = ".pins";
+
+	private static final int MAX_FETCHES = 3;
+
+	// file locks are per jvm, threads of one jvm must not overlap
+	private static final Object JVM_LOCK = new Object();
+
+	private final File root;
+	private final long maxSize;
+
+	public ArtifactCache(File root) {
+		this(root, UNLIMITED);
+	}
+
+	/**
+	 * @param maxSize size limit in bytes, least recently used objects are
+	 *            evicted after each new archive if the cache is bigger
+	 */
+	public ArtifactCache(File root, long maxSize) {
+		this.root = root;
+		this.maxSize = maxSize;
+	}
+
+	public File root() {
+		return root;
+	}
+
+	/**
+	 * Runs the action with the archive and the extract dir of the download
+	 * path, fetches and stores the archive first if it is not cached. The cache
+	 * stays locked while the action runs, so the entry can not be evicted by
+	 * this or another jvm meanwhile. The action must not call other methods of
+	 * this cache except {@link #pin(File)}.
+	 */
+	public <T> T use(final String path, IFetch fetch, final IUse<T> action) throws IOException {
+		for (int fetches = 0; fetches < MAX_FETCHES; fetches++) {
+			Result<T> result = locked(() -> {
+				String hash = refs().getProperty(path);
+				if (hash == null || !archiveFile(hash).isFile()) {
+					return null;
+				}
+				touch(hash);
+				return new Result<>(action.use(archiveFile(hash), extractDirFile(hash)));
+			});
+			if (result != null) {
+				return result.value;
+			}
+			// download without holding the lock, other distributions stay usable
+			store(path, fetch.fetch());
+		}
+		throw new IOException("archive for " + path + " was evicted right after each download");
+	}
+
+	/**
+	 * Protects an extract dir from eviction until the pin is closed, also
+	 * across jvms. A pin of a jvm that died without closing it is removed by the
+	 * next eviction. Only call it within {@link #use(String, IFetch, IUse)}.
+	 */
+	public Pin pin(File extractDir) throws IOException {
+		File pins = new File(extractDir.getParentFile(), extractDir.getName().substring(0,
+				extractDir.getName().length() - EXTRACTED_SUFFIX.length()) + PINS_SUFFIX);
+		Files.createDirectories(pins.toPath());
+		File pin = new File(pins, UUID.randomUUID() + ".pin");
+		FileChannel channel = FileChannel.open(pin.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		try {
+			return new Pin(pin, channel, channel.lock());
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			Files.deleteIfExists(pin.toPath());
+			throw e;
+		}
+	}
+
+	/**
+	 * Only a lookup, the archive may be evicted right after it returns, see
+	 * {@link #use(String, IFetch, IUse)}.
+	 *
+	 * @return the cached archive for the download path, null if there is none
+	 */
+	public File archive(final String path) throws IOException {
+		return locked(() -> {
+			String hash = refs().getProperty(path);
+			if (hash == null || !archiveFile(hash).isFile()) {
+				return null;
+			}
+			touch(hash);
+			return archiveFile(hash);
+		});
+	}
+
+	/**
+	 * Only a lookup like {@link #archive(String)}.
+	 *
+	 * @return the directory for files extracted from the cached archive, null if
+	 *         there is no archive for the download path
+	 */
+	public File extractDir(String path) throws IOException {
+		File archive = archive(path);
+		if (archive == null) {
+			return null;
+		}
+		return extractDirFile(hashOf(archive));
+	}
+
+	/**
+	 * Moves the downloaded archive into the cache and evicts least recently used
+	 * objects if the cache is bigger than its limit.
+	 *
+	 * @return the cached archive
+	 */
+	public File store(final String path, final File downloaded) throws IOException {
+		final String hash = RangedDownloader.sha256(downloaded);
+		return locked(() -> {
+			File archive = archiveFile(hash);
+			Files.createDirectories(archive.getParentFile().toPath());
+			if (archive.isFile()) {
+				Files.delete(downloaded.toPath());
+			} else {
+				Files.move(downloaded.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			Properties refs = refs();
+			refs.setProperty(path, hash);
+			writeRefs(refs);
+			touch(hash);
+			evict(maxSize, hash);
+			return archive;
+		});
+	}
+
+	/**
+	 * @return every cached object, least recently used first
+	 */
+	public List<Entry> entries() throws IOException {
+		return locked(this::entriesUnlocked);
+	}
+
+	public long size() throws IOException {
+		long ret = 0;
+		for (Entry entry : entries()) {
+			ret += entry.size();
+		}
+		return ret;
+	}
+
+	/**
+	 * Evicts least recently used objects until the cache is not bigger than
+	 * maxSize.
+	 *
+	 * @return evicted objects
+	 */
+	public List<Entry> prune(final long maxSize) throws IOException {
+		return locked(() -> evict(maxSize, null));
+	}
+
+	private List<Entry> evict(long limit, String keep) throws IOException {
+		List<Entry> entries = entriesUnlocked();
+		long size = 0;
+		for (Entry entry : entries) {
+			size += entry.size();
+		}
+		List<Entry> ret = new ArrayList<>();
+		Properties refs = refs();
+		for (Entry entry : entries) {
+			if (size <= limit) {
+				break;
+			}
+			if (entry.hash().equals(keep)) {
+				continue;
+			}
+			if (isPinned(entry.hash())) {
+				logger.info("keep {}, its extracted files are in use", entry.paths());
+				continue;
+			}
+			logger.info("evict {} ({} bytes, last used {})", entry.paths(), entry.size(), entry.lastUsed());
+			deleteRecursive(archiveFile(entry.hash()).toPath());
+			deleteRecursive(new File(objects(), entry.hash() + EXTRACTED_SUFFIX).toPath());
+			deleteRecursive(new File(objects(), entry.hash() + USED_SUFFIX).toPath());
+			deleteRecursive(new File(objects(), entry.hash() + PINS_SUFFIX).toPath());
+			for (String path : entry.paths()) {
+				refs.remove(path);
+			}
+			size -= entry.size();
+			ret.add(entry);
+		}
+		if (!ret.isEmpty()) {
+			writeRefs(refs);
+		}
+		return ret;
+	}
+
+	/**
+	 * removes pins nobody holds a lock on anymore
+	 *
+	 * @return true if a live pin is left
+	 */
+	private boolean isPinned(String hash) throws IOException {
+		File[] pins = new File(objects(), hash + PINS_SUFFIX).listFiles();
+		boolean ret = false;
+		if (pins != null) {
+			for (File pin : pins) {
+				if (isHeld(pin)) {
+					ret = true;
+				} else {
+					logger.debug("remove stale pin {}", pin);
+					Files.deleteIfExists(pin.toPath());
+				}
+			}
+		}
+		return ret;
+	}
+
+	private static boolean isHeld(File pin) throws IOException {
+		try (FileChannel channel = FileChannel.open(pin.toPath(), StandardOpenOption.WRITE)) {
+			FileLock lock = channel.tryLock();
+			if (lock == null) {
+				// held by another jvm
+				return true;
+			}
+			lock.release();
+			return false;
+		} catch (OverlappingFileLockException e) {
+			// held by this jvm
+			return true;
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+	}
+
+	private List<Entry> entriesUnlocked() throws IOException {
+		Map<String, List<String>> pathsByHash = new TreeMap<>();
+		Properties refs = refs();
+		for (String path : refs.stringPropertyNames()) {
+			pathsByHash.computeIfAbsent(refs.getProperty(path), h -> new ArrayList<>()).add(path);
+		}
+		List<Entry> ret = new ArrayList<>();
+		File[] files = objects().listFiles();
+		if (files != null) {
+			for (File file : files) {
+				String name = file.getName();
+				if (name.endsWith(ARCHIVE_SUFFIX)) {
+					String hash = name.substring(0, name.length() - ARCHIVE_SUFFIX.length());
+					File used = new File(objects(), hash + USED_SUFFIX);
+					long size = file.length() + sizeOf(new File(objects(), hash + EXTRACTED_SUFFIX).toPath());
+					List<String> paths = pathsByHash.getOrDefault(hash, Collections.<String>emptyList());
+					ret.add(new Entry(hash, paths, size, used.isFile() ? used.lastModified() : file.lastModified()));
+				}
+			}
+		}
+		ret.sort(Comparator.comparingLong(Entry::lastUsed));
+		return ret;
+	}
+
+	private <T> T locked(CacheAction<T> action) throws IOException {
+		synchronized (JVM_LOCK) {
+			Files.createDirectories(root.toPath());
+			try (FileChannel channel = FileChannel.open(new File(root, LOCK_FILE).toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE);
+					FileLock lock = channel.lock()) {
+				return action.run();
+			}
+		}
+	}
+
+	private void touch(String hash) throws IOException {
+		File used = new File(objects(), hash + USED_SUFFIX);
+		if (!used.exists()) {
+			Files.createFile(used.toPath());
+		}
+		if (!used.setLastModified(System.currentTimeMillis())) {
+			logger.debug("could not update last use of {}", hash);
+		}
+	}
+
+	private Properties refs() throws IOException {
+		Properties ret = new Properties();
+		File refs = new File(root, REFS_FILE);
+		if (refs.isFile()) {
+			try (InputStream in = new FileInputStream(refs)) {
+				ret.load(in);
+			}
+		}
+		return ret;
+	}
+
+	private void writeRefs(Properties refs) throws IOException {
+		File tmp = new File(root, REFS_FILE + ".tmp");
+		try (OutputStream out = new FileOutputStream(tmp)) {
+			refs.store(out, "download path = sha256 of archive");
+		}
+		Files.move(tmp.toPath(), new File(root, REFS_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private File objects() {
+		return new File(root, OBJECTS_DIR);
+	}
+
+	private File archiveFile(String hash) {
+		return new File(objects(), hash + ARCHIVE_SUFFIX);
+	}
+
+	private File extractDirFile(String hash) {
+		return new File(objects(), hash + EXTRACTED_SUFFIX);
+	}
+
+	private static String hashOf(File archive) {
+		String name = archive.getName();
+		return name.substring(0, name.length() - ARCHIVE_SUFFIX.length());
+	}
+
+	private static long sizeOf(Path path) throws IOException {
+		if (!Files.exists(path)) {
+			return 0;
+		}
+		final long[] ret = { 0 };
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				ret[0] += attrs.size();
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return ret[0];
+	}
+
+	private static void deleteRecursive(Path path) throws IOException {
+		if (!Files.exists(path)) {
+			return;
+		}
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * parses sizes like 512M, 2G or 1024
+	 */
+	public static long parseSize(String size) {
+		String value = size.trim().toUpperCase();
+		long factor = 1;
+		char unit = value.charAt(value.length() - 1);
+		if (Character.isLetter(unit)) {
+			value = value.substring(0, value.length() - 1);
+			switch (unit) {
+				case 'K':
+					factor = 1024L;
+					break;
+				case 'M':
+					factor = 1024L * 1024;
+					break;
+				case 'G':
+					factor = 1024L * 1024 * 1024;
+					break;
+				default:
+					throw new IllegalArgumentException("unknown size unit: " + size);
+			}
+		}
+		return Long.parseLong(value) * factor;
+	}
+
+	interface CacheAction<T> {
+		T run() throws IOException;
+	}
+
+	/**
+	 * downloads an archive that is not cached
+	 */
+	public interface IFetch {
+		File fetch() throws IOException;
+	}
+
+	public interface IUse<T> {
+		T use(File archive, File extractDir) throws IOException;
+	}
+
+	private static class Result<T> {
+
+		final T value;
+
+		Result(T value) {
+			this.value = value;
+		}
+	}
+
+	/**
+	 * keeps extracted files from being evicted until it is closed
+	 */
+	public static class Pin implements Closeable {
+
+		private final File file;
+		private final FileChannel channel;
+		private final FileLock lock;
+
+		Pin(File file, FileChannel channel, FileLock lock) {
+			this.file = file;
+			this.channel = channel;
+			this.lock = lock;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				lock.release();
+			} finally {
+				channel.close();
+				Files.deleteIfExists(file.toPath());
+			}
+		}
+	}
+
+	public static class Entry {
+
+		private final String hash;
+		private final List<String> paths;
+		private final long size;
+		private final long lastUsed;
+
+		Entry(String hash, List<String> paths, long size, long lastUsed) {
+			this.hash = hash;
+			this.paths = Collections.unmodifiableList(new ArrayList<>(paths));
+			this.size = size;
+			this.lastUsed = lastUsed;
+		}
+
+		public String hash() {
+			return hash;
+		}
+
+		/**
+		 * @return download paths of this archive
+		 */
+		public List<String> paths() {
+			return paths;
+		}
+
+		/**
+		 * @return size of archive and extracted files in bytes
+		 */
+		public long size() {
+			return size;
+		}
+
+		public long lastUsed() {
+			return lastUsed;
+		}
+
+		@Override
+		public String toString() {
+			return hash + " " + paths + " " + size + " bytes, last used " + new Date(lastUsed);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.flapdoodle.embed.process.config.store.FileSet;
+import de.flapdoodle.embed.process.config.store.IPackageResolver;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.extract.IExtractedFileSet;
+import de.flapdoodle.embed.process.extract.ITempNaming;
+import de.flapdoodle.embed.process.extract.ImmutableExtractedFileSet;
+import de.flapdoodle.embed.process.io.directories.IDirectory;
+import de.flapdoodle.embed.process.store.IArtifactStore;
+
+/**
+ * Resolves executables from an {@link ArtifactBundle}, without network access
+ * and without decompression. Each extraction copies the executables to the
+ * temp dir. The bundle is opened for each check and extraction and closed
+ * right after, so a store that is dropped keeps no file open.
+ */
+public class BundleArtifactStore implements IArtifactStore {
+
+	private static Logger logger = LoggerFactory.getLogger(BundleArtifactStore.class);
+
+	private final File bundle;
+	private final IPackageResolver packageResolver;
+	private final IDirectory tempDir;
+	private final ITempNaming executableNaming;
+
+	/**
+	 * @throws IOException if bundle is not an {@link ArtifactBundle}
+	 */
+	public BundleArtifactStore(File bundle, IPackageResolver packageResolver, IDirectory tempDir,
+			ITempNaming executableNaming) throws IOException {
+		ArtifactBundle.open(bundle).close();
+		this.bundle = bundle;
+		this.packageResolver = packageResolver;
+		this.tempDir = tempDir;
+		this.executableNaming = executableNaming;
+	}
+
+	@Override
+	public boolean checkDistribution(Distribution distribution) throws IOException {
+		try (ArtifactBundle opened = ArtifactBundle.open(bundle)) {
+			for (FileSet.Entry entry : packageResolver.getFileSet(distribution).entries()) {
+				if (!opened.contains(keyOf(distribution, entry))) {
+					logger.warn("{} not found in bundle {}", keyOf(distribution, entry), bundle);
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	@Override
+	public IExtractedFileSet extractFileSet(Distribution distribution) throws IOException {
+		File baseDir = tempDir.asFile();
+		ImmutableExtractedFileSet.Builder builder = ImmutableExtractedFileSet.builder(baseDir)
+				.baseDirIsGenerated(tempDir.isGenerated());
+		try (ArtifactBundle opened = ArtifactBundle.open(bundle)) {
+			for (FileSet.Entry entry : packageResolver.getFileSet(distribution).entries()) {
+				File copy = new File(baseDir, executableNaming.nameFor("extract", entry.destination()));
+				builder.file(entry.type(), opened.copyTo(keyOf(distribution, entry), copy));
+			}
+		}
+		return builder.build();
+	}
+
+	@Override
+	public void removeFileSet(Distribution distribution, IExtractedFileSet files) {
+		List<File> copies = new ArrayList<>(files.libraryFiles());
+		copies.add(files.executable());
+		for (File copy : copies) {
+			if (copy.exists() && !copy.delete()) {
+				logger.warn("could not delete {}", copy);
+				copy.deleteOnExit();
+			}
+		}
+	}
+
+	private String keyOf(Distribution distribution, FileSet.Entry entry) {
+		return ArtifactBundle.keyOf(packageResolver.getPath(distribution), entry.destination());
+	}
+}
@@ -0,0 +1,470 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.flapdoodle.embed.process.config.store.IDownloadConfig;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.io.directories.IDirectory;
+import de.flapdoodle.embed.process.io.directories.PropertyOrPlatformTempDir;
+import de.flapdoodle.embed.process.io.progress.IProgressListener;
+import de.flapdoodle.embed.process.store.IDownloader;
+
+/**
+ * Downloads an archive with parallel http range requests into a preallocated
+ * file. Finished chunks are recorded in a state file beside the partial
+ * download, so a failed download continues where it stopped. The result is
+ * verified against the published sha256 checksum (url + ".sha256") if there
+ * is one.
+ *
+ * Falls back to a single stream if the server does not support ranges or the
+ * url is not a http url, e.g. a file:// mirror. Connections use the proxy and
+ * timeouts of the download config.
+ *
+ * Not the default, use it with
+ * {@code new ExtractedArtifactStoreBuilder().defaults(command).downloader(new RangedDownloader())}.
+ */
+public class RangedDownloader implements IDownloader {
+
+	private static Logger logger = LoggerFactory.getLogger(RangedDownloader.class);
+
+	public static final int DEFAULT_PARALLEL_REQUESTS = 4;
+	public static final long DEFAULT_CHUNK_SIZE = 4L * 1024 * 1024;
+
+	static final String PART_SUFFIX = ".part";
+	static final String STATE_SUFFIX = ".part.state";
+	static final String CHECKSUM_SUFFIX = ".sha256";
+
+	static final int DEFAULT_CONNECT_TIMEOUT_IN_MS = 10000;
+	static final int DEFAULT_READ_TIMEOUT_IN_MS = 30000;
+	private static final int MAX_TRIES_PER_CHUNK = 3;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int HTTP_PARTIAL_CONTENT = 206;
+	private static final int PERCENT = 100;
+	private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+\\d+-\\d+/(\\d+)");
+
+	private final int parallelRequests;
+	private final long chunkSize;
+
+	public RangedDownloader() {
+		this(DEFAULT_PARALLEL_REQUESTS, DEFAULT_CHUNK_SIZE);
+	}
+
+	public RangedDownloader(int parallelRequests, long chunkSize) {
+		if (parallelRequests < 1 || chunkSize < 1) {
+			throw new IllegalArgumentException("parallelRequests and chunkSize must be positive");
+		}
+		this.parallelRequests = parallelRequests;
+		this.chunkSize = chunkSize;
+	}
+
+	@Override
+	public String getDownloadUrl(IDownloadConfig runtime, Distribution distribution) {
+		return runtime.getDownloadPath().getPath(distribution) + runtime.getPackageResolver().getPath(distribution);
+	}
+
+	@Override
+	public File download(IDownloadConfig runtime, Distribution distribution) throws IOException {
+		String url = getDownloadUrl(runtime, distribution);
+		String fileName = url.substring(url.lastIndexOf('/') + 1);
+		File dir = downloadDir(runtime);
+		File part = new File(dir, fileName + PART_SUFFIX);
+		File stateFile = new File(dir, fileName + STATE_SUFFIX);
+
+		IProgressListener progress = runtime.getProgressListener();
+		String label = "Download " + distribution;
+		progress.start(label);
+
+		Remote remote = isHttp(url) ? probe(runtime, url) : new Remote(false, -1, null);
+		if (remote.supportsRanges) {
+			downloadRanges(runtime, url, remote, part, stateFile, progress, label);
+		} else {
+			logger.info("{} does not support range requests, copy as one stream", url);
+			Files.deleteIfExists(stateFile.toPath());
+			downloadStream(runtime, url, part);
+		}
+
+		verifyChecksum(runtime, url, part, stateFile);
+		Files.deleteIfExists(stateFile.toPath());
+
+		File ret = new File(dir, runtime.getFileNaming() != null
+				? runtime.getFileNaming().nameFor("embedmongo-download", "-" + fileName)
+				: "embedmongo-download-" + UUID.randomUUID() + "-" + fileName);
+		Files.move(part.toPath(), ret.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		progress.done(label);
+		return ret;
+	}
+
+	private void downloadRanges(final IDownloadConfig runtime, final String url, Remote remote, File part, File stateFile,
+			final IProgressListener progress, final String label) throws IOException {
+		final int chunks = (int) ((remote.length + chunkSize - 1) / chunkSize);
+		final State state = State.load(stateFile, part, url, remote, chunkSize);
+		logger.debug("download {}: {} of {} chunks already done", url, state.done.cardinality(), chunks);
+
+		try (FileChannel channel = FileChannel.open(part.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			if (remote.length > 0 && channel.size() != remote.length) {
+				channel.truncate(remote.length);
+				// preallocate, sparse where the filesystem supports it
+				channel.write(ByteBuffer.wrap(new byte[1]), remote.length - 1);
+			}
+
+			ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelRequests, chunks)));
+			try {
+				List<Future<?>> results = new ArrayList<>();
+				for (int i = 0; i < chunks; i++) {
+					if (state.isDone(i)) {
+						continue;
+					}
+					final int chunk = i;
+					final long start = chunk * chunkSize;
+					final long end = Math.min(remote.length, start + chunkSize) - 1;
+					results.add(executor.submit(() -> {
+						downloadChunk(runtime, url, channel, start, end);
+						// a chunk recorded as done must survive a crash
+						channel.force(false);
+						int done = state.markDone(chunk);
+						progress.progress(label, (int) ((long) done * PERCENT / chunks));
+						return null;
+					}));
+				}
+				for (Future<?> result : results) {
+					result.get();
+				}
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IOException("download of " + url + " failed", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("download of " + url + " interrupted", e);
+			} finally {
+				shutdownAndWait(executor);
+			}
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * running chunks must not write into the channel after it was closed
+	 */
+	private static void shutdownAndWait(ExecutorService executor) {
+		executor.shutdownNow();
+		try {
+			if (!executor.awaitTermination(DEFAULT_READ_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS)) {
+				logger.warn("chunk downloads did not stop in time");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void downloadChunk(IDownloadConfig runtime, String url, FileChannel channel, long start, long end)
+			throws IOException {
+		IOException lastFailure = null;
+		for (int tries = 0; tries < MAX_TRIES_PER_CHUNK; tries++) {
+			try {
+				HttpURLConnection connection = open(runtime, url);
+				connection.setRequestProperty("Range", "bytes=" + start + "-" + end);
+				if (connection.getResponseCode() != HTTP_PARTIAL_CONTENT) {
+					throw new IOException("expected partial content for " + url + ", got " + connection.getResponseCode());
+				}
+				long position = start;
+				try (InputStream in = connection.getInputStream()) {
+					byte[] buffer = new byte[BUFFER_SIZE];
+					int read;
+					while (position <= end && (read = in.read(buffer, 0, (int) Math.min(buffer.length, end - position + 1))) != -1) {
+						ByteBuffer src = ByteBuffer.wrap(buffer, 0, read);
+						while (src.hasRemaining()) {
+							position += channel.write(src, position);
+						}
+					}
+				}
+				if (position != end + 1) {
+					throw new IOException("range " + start + "-" + end + " of " + url + " ended at " + position);
+				}
+				return;
+			} catch (IOException e) {
+				logger.debug("range {}-{} of {} failed, try again", start, end, url, e);
+				lastFailure = e;
+			}
+		}
+		throw lastFailure;
+	}
+
+	private static void downloadStream(IDownloadConfig runtime, String url, File part) throws IOException {
+		URLConnection connection = isHttp(url) ? open(runtime, url) : new URL(url).openConnection();
+		try (InputStream in = connection.getInputStream(); OutputStream out = new FileOutputStream(part)) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		}
+	}
+
+	private static void verifyChecksum(IDownloadConfig runtime, String url, File part, File stateFile) throws IOException {
+		String expected = expectedChecksum(runtime, url);
+		if (expected == null) {
+			logger.warn("no checksum found at {}{}, download not verified", url, CHECKSUM_SUFFIX);
+			return;
+		}
+		String actual = sha256(part);
+		if (!expected.equalsIgnoreCase(actual)) {
+			Files.deleteIfExists(part.toPath());
+			Files.deleteIfExists(stateFile.toPath());
+			throw new IOException("checksum mismatch for " + url + ": expected " + expected + ", got " + actual);
+		}
+	}
+
+	private static String expectedChecksum(IDownloadConfig runtime, String url) throws IOException {
+		URLConnection connection;
+		if (isHttp(url)) {
+			HttpURLConnection http = open(runtime, url + CHECKSUM_SUFFIX);
+			if (http.getResponseCode() != HttpURLConnection.HTTP_OK) {
+				return null;
+			}
+			connection = http;
+		} else {
+			connection = new URL(url + CHECKSUM_SUFFIX).openConnection();
+		}
+		try (InputStream in = connection.getInputStream()) {
+			String content = new String(readAll(in), StandardCharsets.US_ASCII).trim();
+			// "<hash>  <filename>"
+			String[] parts = content.split("\\s+");
+			return parts.length > 0 && !parts[0].isEmpty() ? parts[0] : null;
+		} catch (FileNotFoundException e) {
+			return null;
+		}
+	}
+
+	private static boolean isHttp(String url) {
+		return url.startsWith("http:") || url.startsWith("https:");
+	}
+
+	static String sha256(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		for (byte b : digest.digest()) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	private static Remote probe(IDownloadConfig runtime, String url) throws IOException {
+		HttpURLConnection connection = open(runtime, url);
+		connection.setRequestProperty("Range", "bytes=0-0");
+		int code = connection.getResponseCode();
+		String validator = connection.getHeaderField("ETag") != null
+				? connection.getHeaderField("ETag")
+				: connection.getHeaderField("Last-Modified");
+		try {
+			if (code == HTTP_PARTIAL_CONTENT) {
+				Matcher matcher = CONTENT_RANGE.matcher(String.valueOf(connection.getHeaderField("Content-Range")));
+				if (matcher.matches()) {
+					return new Remote(true, Long.parseLong(matcher.group(1)), validator);
+				}
+			}
+			if (code != HttpURLConnection.HTTP_OK) {
+				throw new IOException("could not download " + url + ": " + code);
+			}
+			return new Remote(false, connection.getContentLengthLong(), validator);
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	static HttpURLConnection open(IDownloadConfig runtime, String url) throws IOException {
+		Proxy proxy = runtime.getProxyFactory() != null ? runtime.getProxyFactory().createProxy() : null;
+		URL target = new URL(url);
+		HttpURLConnection connection = (HttpURLConnection) (proxy != null
+				? target.openConnection(proxy)
+				: target.openConnection());
+		if (runtime.getTimeoutConfig() != null) {
+			connection.setConnectTimeout(runtime.getTimeoutConfig().getConnectionTimeout());
+			connection.setReadTimeout(runtime.getTimeoutConfig().getReadTimeout());
+		} else {
+			connection.setConnectTimeout(DEFAULT_CONNECT_TIMEOUT_IN_MS);
+			connection.setReadTimeout(DEFAULT_READ_TIMEOUT_IN_MS);
+		}
+		if (runtime.getUserAgent() != null) {
+			connection.setRequestProperty("User-Agent", runtime.getUserAgent());
+		}
+		return connection;
+	}
+
+	private static File downloadDir(IDownloadConfig runtime) throws IOException {
+		IDirectory dir = runtime.getArtifactStorePath() != null
+				? runtime.getArtifactStorePath()
+				: PropertyOrPlatformTempDir.defaultInstance();
+		File ret = dir.asFile();
+		if (!ret.isDirectory() && !ret.mkdirs() && !ret.isDirectory()) {
+			throw new IOException("could not create " + ret);
+		}
+		return ret;
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	static class Remote {
+
+		final boolean supportsRanges;
+		final long length;
+		final String validator;
+
+		Remote(boolean supportsRanges, long length, String validator) {
+			this.supportsRanges = supportsRanges;
+			this.length = length;
+			this.validator = validator;
+		}
+	}
+
+	/**
+	 * finished chunks of a partial download, only valid for the same url,
+	 * length, validator and chunk size
+	 */
+	static class State {
+
+		private final File file;
+		private final Properties identity;
+		private final BitSet done;
+
+		private State(File file, Properties identity, BitSet done) {
+			this.file = file;
+			this.identity = identity;
+			this.done = done;
+		}
+
+		static State load(File file, File part, String url, Remote remote, long chunkSize) throws IOException {
+			Properties identity = new Properties();
+			identity.setProperty("url", url);
+			identity.setProperty("length", String.valueOf(remote.length));
+			identity.setProperty("chunkSize", String.valueOf(chunkSize));
+			identity.setProperty("validator", remote.validator != null ? remote.validator : "");
+
+			BitSet done = new BitSet();
+			if (file.isFile() && part.isFile()) {
+				Properties stored = new Properties();
+				try (InputStream in = new FileInputStream(file)) {
+					stored.load(in);
+				}
+				String chunks = stored.getProperty("done", "");
+				stored.remove("done");
+				if (stored.equals(identity)) {
+					for (String chunk : chunks.split(",")) {
+						if (!chunk.isEmpty()) {
+							done.set(Integer.parseInt(chunk));
+						}
+					}
+				} else {
+					logger.info("remote file {} changed, download again", url);
+				}
+			}
+			if (done.isEmpty()) {
+				Files.deleteIfExists(part.toPath());
+			}
+			return new State(file, identity, done);
+		}
+
+		synchronized boolean isDone(int chunk) {
+			return done.get(chunk);
+		}
+
+		/**
+		 * @return number of finished chunks
+		 */
+		synchronized int markDone(int chunk) throws IOException {
+			done.set(chunk);
+			Properties content = new Properties();
+			content.putAll(identity);
+			StringBuilder chunks = new StringBuilder();
+			for (int i = done.nextSetBit(0); i >= 0; i = done.nextSetBit(i + 1)) {
+				if (chunks.length() > 0) {
+					chunks.append(',');
+				}
+				chunks.append(i);
+			}
+			content.setProperty("done", chunks.toString());
+
+			File tmp = new File(file.getPath() + ".tmp");
+			try (OutputStream out = new FileOutputStream(tmp)) {
+				content.store(out, "embedmongo partial download");
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return done.cardinality();
+		}
+	}
+}
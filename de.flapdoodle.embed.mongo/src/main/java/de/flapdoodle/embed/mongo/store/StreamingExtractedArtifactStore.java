@@ -0,0 +1,340 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.store;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.flapdoodle.embed.process.config.store.FileSet;
+import de.flapdoodle.embed.process.config.store.IDownloadConfig;
+import de.flapdoodle.embed.process.config.store.IPackageResolver;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.extract.IExtractedFileSet;
+import de.flapdoodle.embed.process.extract.ITempNaming;
+import de.flapdoodle.embed.process.extract.ImmutableExtractedFileSet;
+import de.flapdoodle.embed.process.io.directories.IDirectory;
+import de.flapdoodle.embed.process.store.IArtifactStore;
+import de.flapdoodle.embed.process.store.IDownloader;
+
+/**
+ * Keeps downloaded archives in the artifact store path and extracts only the
+ * files the package resolver asks for with a {@link StreamingExtractor} into
+ * the extract dir. Each caller gets its own copy of the executable in the temp
+ * dir, like the extracted artifact store of embed.process, a hardlink or the
+ * extracted file itself, see {@link ExecutableMode}.
+ *
+ * Every pass records the extracted files with their size in an index in the
+ * extract dir, and the files the archive does not contain as absent. A file
+ * only counts as extracted if the index lists it with its current size. With
+ * additional package resolvers, the files of all of them are extracted in the
+ * same pass, so a store for another command finds its files in the index and
+ * does not touch the archive. Files known to be absent are not searched for
+ * again.
+ */
+public class StreamingExtractedArtifactStore implements IArtifactStore {
+
+	private static Logger logger = LoggerFactory.getLogger(StreamingExtractedArtifactStore.class);
+
+	static final String INDEX_FILE = ".index";
+	static final String ABSENT = "absent";
+
+	public enum ExecutableMode {
+		/**
+		 * each caller gets a copy in the temp dir
+		 */
+		COPY,
+		/**
+		 * each caller gets a hardlink in the temp dir, a copy if linking fails
+		 */
+		HARDLINK,
+		/**
+		 * all callers run the extracted file, nothing is copied or deleted
+		 */
+		SHARED
+	}
+
+	private final IDownloadConfig downloadConfig;
+	private final IDownloader downloader;
+	private final IDirectory extractDir;
+	private final IDirectory tempDir;
+	private final ITempNaming executableNaming;
+	private final List<IPackageResolver> extractTogether;
+	private final ArtifactCache cache;
+	private final ExecutableMode executableMode;
+	private final Map<IExtractedFileSet, ArtifactCache.Pin> pins = Collections.synchronizedMap(
+			new IdentityHashMap<IExtractedFileSet, ArtifactCache.Pin>());
+
+	public StreamingExtractedArtifactStore(IDownloadConfig downloadConfig, IDownloader downloader, IDirectory extractDir,
+			IDirectory tempDir, ITempNaming executableNaming) {
+		this(downloadConfig, downloader, extractDir, tempDir, executableNaming, Collections.<IPackageResolver>emptyList());
+	}
+
+	/**
+	 * @param extractTogether package resolvers whose files are extracted in the
+	 *            same pass as the files of the download config package resolver
+	 */
+	public StreamingExtractedArtifactStore(IDownloadConfig downloadConfig, IDownloader downloader, IDirectory extractDir,
+			IDirectory tempDir, ITempNaming executableNaming, List<IPackageResolver> extractTogether) {
+		this(downloadConfig, downloader, extractDir, tempDir, executableNaming, extractTogether, null);
+	}
+
+	/**
+	 * @param cache if not null, archives and extracted files are kept in this
+	 *            cache instead of the artifact store path and the extract dir
+	 */
+	public StreamingExtractedArtifactStore(IDownloadConfig downloadConfig, IDownloader downloader, IDirectory extractDir,
+			IDirectory tempDir, ITempNaming executableNaming, List<IPackageResolver> extractTogether, ArtifactCache cache) {
+		this(downloadConfig, downloader, extractDir, tempDir, executableNaming, extractTogether, cache, ExecutableMode.COPY);
+	}
+
+	/**
+	 * @param executableMode how callers get the extracted files
+	 */
+	public StreamingExtractedArtifactStore(IDownloadConfig downloadConfig, IDownloader downloader, IDirectory extractDir,
+			IDirectory tempDir, ITempNaming executableNaming, List<IPackageResolver> extractTogether, ArtifactCache cache,
+			ExecutableMode executableMode) {
+		this.cache = cache;
+		this.executableMode = executableMode;
+		this.extractTogether = new ArrayList<>(extractTogether);
+		this.downloadConfig = downloadConfig;
+		this.downloader = downloader;
+		this.extractDir = extractDir;
+		this.tempDir = tempDir;
+		this.executableNaming = executableNaming;
+	}
+
+	@Override
+	public boolean checkDistribution(final Distribution distribution) throws IOException {
+		if (cache != null) {
+			return cache.use(pathOf(distribution), () -> downloader.download(downloadConfig, distribution),
+					(archive, extracted) -> true);
+		}
+		File archive = archiveOf(distribution);
+		if (archive.isFile()) {
+			return true;
+		}
+		File downloaded = downloader.download(downloadConfig, distribution);
+		Files.createDirectories(archive.getParentFile().toPath());
+		Files.move(downloaded.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return true;
+	}
+
+	@Override
+	public IExtractedFileSet extractFileSet(final Distribution distribution) throws IOException {
+		if (cache != null) {
+			// the entry can not be evicted while its files are extracted and handed out
+			return cache.use(pathOf(distribution), () -> downloader.download(downloadConfig, distribution),
+					(archive, extracted) -> extractFileSet(distribution, archive, extracted));
+		}
+		return extractFileSet(distribution, archiveOf(distribution), extractDirOf(distribution));
+	}
+
+	private IExtractedFileSet extractFileSet(Distribution distribution, File archive, File extracted) throws IOException {
+		IPackageResolver packageResolver = downloadConfig.getPackageResolver();
+		Properties index = readIndex(extracted);
+		List<FileSet.Entry> missing = new ArrayList<>();
+		for (FileSet.Entry entry : packageResolver.getFileSet(distribution).entries()) {
+			if (ABSENT.equals(index.getProperty(entry.destination()))) {
+				throw new IOException("could not find " + entry + " in " + archive + ", see " + new File(extracted, INDEX_FILE));
+			}
+			if (!isExtracted(index, extracted, entry)) {
+				missing.add(entry);
+			}
+		}
+		if (!missing.isEmpty()) {
+			if (cache == null && !archive.isFile()) {
+				checkDistribution(distribution);
+			}
+			List<FileSet.Entry> optional = alsoExtract(distribution, missing, extracted, index);
+			long start = System.currentTimeMillis();
+			Map<FileSet.Entry, File> files = StreamingExtractor.extract(archive, packageResolver.getArchiveType(distribution),
+					extracted, missing, optional);
+			logger.debug("extracted {} from {} in {}ms", files.values(), archive, System.currentTimeMillis() - start);
+
+			for (Map.Entry<FileSet.Entry, File> file : files.entrySet()) {
+				index.setProperty(file.getKey().destination(), String.valueOf(file.getValue().length()));
+			}
+			for (FileSet.Entry entry : optional) {
+				if (!files.containsKey(entry)) {
+					index.setProperty(entry.destination(), ABSENT);
+				}
+			}
+			writeIndex(extracted, index);
+		}
+
+		if (executableMode == ExecutableMode.SHARED) {
+			ImmutableExtractedFileSet.Builder builder = ImmutableExtractedFileSet.builder(extracted)
+					.baseDirIsGenerated(false);
+			for (FileSet.Entry entry : packageResolver.getFileSet(distribution).entries()) {
+				builder.file(entry.type(), new File(extracted, entry.destination()));
+			}
+			IExtractedFileSet ret = builder.build();
+			if (cache != null) {
+				// running processes use the extracted files until removeFileSet
+				pins.put(ret, cache.pin(extracted));
+			}
+			return ret;
+		}
+
+		File baseDir = tempDir.asFile();
+		ImmutableExtractedFileSet.Builder builder = ImmutableExtractedFileSet.builder(baseDir)
+				.baseDirIsGenerated(tempDir.isGenerated());
+		for (FileSet.Entry entry : packageResolver.getFileSet(distribution).entries()) {
+			File source = new File(extracted, entry.destination());
+			File copy = new File(baseDir, executableNaming.nameFor("extract", entry.destination()));
+			if (executableMode != ExecutableMode.HARDLINK || !link(source, copy)) {
+				Files.copy(source.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			if (!copy.setExecutable(true)) {
+				throw new IOException("could not make " + copy + " executable");
+			}
+			builder.file(entry.type(), copy);
+		}
+		return builder.build();
+	}
+
+	private static boolean link(File source, File link) {
+		try {
+			Files.deleteIfExists(link.toPath());
+			Files.createLink(link.toPath(), source.toPath());
+			return true;
+		} catch (IOException | UnsupportedOperationException e) {
+			logger.debug("could not link {}, copy it", source, e);
+			return false;
+		}
+	}
+
+	@Override
+	public void removeFileSet(Distribution distribution, IExtractedFileSet files) {
+		if (executableMode == ExecutableMode.SHARED) {
+			// the extracted files are used by other callers
+			ArtifactCache.Pin pin = pins.remove(files);
+			if (pin != null) {
+				try {
+					pin.close();
+				} catch (IOException e) {
+					logger.warn("could not unpin {}", files.baseDir(), e);
+				}
+			}
+			return;
+		}
+		List<File> copies = new ArrayList<>(files.libraryFiles());
+		copies.add(files.executable());
+		for (File copy : copies) {
+			if (copy.exists() && !copy.delete()) {
+				logger.warn("could not delete {}", copy);
+				copy.deleteOnExit();
+			}
+		}
+		if (files.baseDirIsGenerated() && !files.baseDir().delete()) {
+			files.baseDir().deleteOnExit();
+		}
+	}
+
+	private List<FileSet.Entry> alsoExtract(Distribution distribution, List<FileSet.Entry> missing, File extracted,
+			Properties index) {
+		Set<String> destinations = new HashSet<>();
+		for (FileSet.Entry entry : missing) {
+			destinations.add(entry.destination());
+		}
+		List<FileSet.Entry> ret = new ArrayList<>();
+		for (IPackageResolver resolver : extractTogether) {
+			for (FileSet.Entry entry : resolver.getFileSet(distribution).entries()) {
+				if (destinations.add(entry.destination()) && !ABSENT.equals(index.getProperty(entry.destination()))
+						&& !isExtracted(index, extracted, entry)) {
+					ret.add(entry);
+				}
+			}
+		}
+		return ret;
+	}
+
+	private static boolean isExtracted(Properties index, File extracted, FileSet.Entry entry) {
+		File file = new File(extracted, entry.destination());
+		return file.isFile() && String.valueOf(file.length()).equals(index.getProperty(entry.destination()));
+	}
+
+	/**
+	 * @return destination = size of extracted files or absent
+	 */
+	static Properties readIndex(File extracted) throws IOException {
+		Properties ret = new Properties();
+		File index = new File(extracted, INDEX_FILE);
+		if (index.isFile()) {
+			try (InputStream in = new FileInputStream(index)) {
+				ret.load(in);
+			}
+		}
+		return ret;
+	}
+
+	private static void writeIndex(File extracted, Properties index) throws IOException {
+		File tmp = new File(extracted, INDEX_FILE + ".tmp");
+		try (OutputStream out = new FileOutputStream(tmp)) {
+			index.store(out, "extracted files and their size, or absent if not in the archive");
+		}
+		Files.move(tmp.toPath(), new File(extracted, INDEX_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private String pathOf(Distribution distribution) {
+		return downloadConfig.getPackageResolver().getPath(distribution);
+	}
+
+	/**
+	 * with a cache the archive is fetched again if it was evicted, but it may be
+	 * evicted again right after this returns
+	 */
+	protected File archiveOf(final Distribution distribution) throws IOException {
+		if (cache != null) {
+			return cache.use(pathOf(distribution), () -> downloader.download(downloadConfig, distribution),
+					(archive, extracted) -> archive);
+		}
+		return new File(downloadConfig.getArtifactStorePath().asFile(), pathOf(distribution));
+	}
+
+	protected File extractDirOf(final Distribution distribution) throws IOException {
+		String path = pathOf(distribution);
+		if (cache != null) {
+			return cache.use(path, () -> downloader.download(downloadConfig, distribution),
+					(archive, extracted) -> extracted);
+		}
+		int dot = path.lastIndexOf('.');
+		return new File(extractDir.asFile(), dot > path.lastIndexOf('/') ? path.substring(0, dot) : path);
+	}
+}
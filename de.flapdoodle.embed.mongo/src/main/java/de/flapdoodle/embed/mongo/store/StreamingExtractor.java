@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.store;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import de.flapdoodle.embed.process.config.store.FileSet;
+import de.flapdoodle.embed.process.distribution.ArchiveType;
+
+/**
+ * Extracts only the entries of a file set from an archive in one pass over
+ * the archive. Entries that do not match are skipped without writing them, and
+ * reading stops as soon as every requested entry was written.
+ */
+public abstract class StreamingExtractor {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private StreamingExtractor() {
+		// no instance
+	}
+
+	/**
+	 * @return the extracted file for each requested entry, written to
+	 *         destinationDir/entry.destination()
+	 * @throws IOException if the archive does not contain every entry
+	 */
+	public static Map<FileSet.Entry, File> extract(File archive, ArchiveType archiveType, File destinationDir,
+			List<FileSet.Entry> entries) throws IOException {
+		return extract(archive, archiveType, destinationDir, entries, Collections.<FileSet.Entry>emptyList());
+	}
+
+	/**
+	 * Like {@link #extract(File, ArchiveType, File, List)}, but also extracts the
+	 * optional entries found in the same pass. Reading stops early only if all
+	 * required and optional entries were written.
+	 *
+	 * @throws IOException if the archive does not contain every required entry
+	 */
+	public static Map<FileSet.Entry, File> extract(File archive, ArchiveType archiveType, File destinationDir,
+			List<FileSet.Entry> required, List<FileSet.Entry> optional) throws IOException {
+		List<FileSet.Entry> entries = new ArrayList<>(required);
+		entries.addAll(optional);
+		if (!destinationDir.isDirectory() && !destinationDir.mkdirs() && !destinationDir.isDirectory()) {
+			throw new IOException("could not create " + destinationDir);
+		}
+		Map<FileSet.Entry, File> ret;
+		switch (archiveType) {
+			case TGZ:
+				ret = extractTgz(archive, destinationDir, entries);
+				break;
+			case ZIP:
+				ret = extractZip(archive, destinationDir, entries);
+				break;
+			default:
+				throw new IOException("streaming extraction of " + archiveType + " not supported");
+		}
+		if (!ret.keySet().containsAll(required)) {
+			List<FileSet.Entry> missing = new ArrayList<>(required);
+			missing.removeAll(ret.keySet());
+			throw new IOException("could not find " + missing + " in " + archive);
+		}
+		return ret;
+	}
+
+	private static Map<FileSet.Entry, File> extractTgz(File archive, File destinationDir, List<FileSet.Entry> entries)
+			throws IOException {
+		Map<FileSet.Entry, File> ret = new LinkedHashMap<>();
+		try (TarArchiveInputStream tar = new TarArchiveInputStream(
+				new GzipCompressorInputStream(new BufferedInputStream(new FileInputStream(archive), BUFFER_SIZE)))) {
+			TarArchiveEntry tarEntry;
+			while (ret.size() < entries.size() && (tarEntry = tar.getNextTarEntry()) != null) {
+				if (tarEntry.isDirectory()) {
+					continue;
+				}
+				FileSet.Entry match = matching(tarEntry.getName(), entries, ret);
+				if (match != null) {
+					ret.put(match, write(tar, destinationDir, match));
+				}
+			}
+		}
+		return ret;
+	}
+
+	private static Map<FileSet.Entry, File> extractZip(File archive, File destinationDir, List<FileSet.Entry> entries)
+			throws IOException {
+		Map<FileSet.Entry, File> ret = new LinkedHashMap<>();
+		// the central directory gives random access, only matching entries are inflated
+		try (ZipFile zip = new ZipFile(archive)) {
+			Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+			while (ret.size() < entries.size() && zipEntries.hasMoreElements()) {
+				ZipEntry zipEntry = zipEntries.nextElement();
+				if (zipEntry.isDirectory()) {
+					continue;
+				}
+				FileSet.Entry match = matching(zipEntry.getName(), entries, ret);
+				if (match != null) {
+					try (InputStream in = zip.getInputStream(zipEntry)) {
+						ret.put(match, write(in, destinationDir, match));
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	private static FileSet.Entry matching(String name, List<FileSet.Entry> entries, Map<FileSet.Entry, File> found) {
+		for (FileSet.Entry entry : entries) {
+			if (!found.containsKey(entry) && entry.matchingPattern().matcher(name).matches()) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * writes to a temp file first, so nobody sees a partially written executable
+	 */
+	private static File write(InputStream in, File destinationDir, FileSet.Entry entry) throws IOException {
+		File destination = new File(destinationDir, entry.destination());
+		File tmp = new File(destinationDir, entry.destination() + ".extracting");
+		try (OutputStream out = new FileOutputStream(tmp)) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		}
+		if (!tmp.setExecutable(true)) {
+			throw new IOException("could not make " + tmp + " executable");
+		}
+		Files.move(tmp.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return destination;
+	}
+}
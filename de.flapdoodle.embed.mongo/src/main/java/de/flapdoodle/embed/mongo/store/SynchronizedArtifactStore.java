@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.extract.IExtractedFileSet;
+import de.flapdoodle.embed.process.io.directories.IDirectory;
+import de.flapdoodle.embed.process.store.IArtifactStore;
+
+/**
+ * Makes sure that a distribution is downloaded and extracted only once, even
+ * if many threads or jvms ask for it at the same time.
+ *
+ * Threads of one jvm asking for the same distribution share one download, the
+ * jvms sharing an artifact store path take turns via a lock file, so the
+ * first one downloads and extracts and all others find the result.
+ */
+public class SynchronizedArtifactStore implements IArtifactStore {
+
+	static final String LOCK_DIR = ".locks";
+
+	// shared by all instances, each builder call creates a new store
+	private static final ConcurrentMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, CompletableFuture<Boolean>> DOWNLOADS = new ConcurrentHashMap<>();
+
+	private final IArtifactStore delegate;
+	private final IDirectory lockDir;
+
+	public SynchronizedArtifactStore(IArtifactStore delegate, IDirectory artifactStorePath) {
+		this.delegate = delegate;
+		this.lockDir = artifactStorePath;
+	}
+
+	@Override
+	public boolean checkDistribution(final Distribution distribution) throws IOException {
+		final String key = keyOf(distribution);
+		CompletableFuture<Boolean> download = new CompletableFuture<>();
+		CompletableFuture<Boolean> running = DOWNLOADS.putIfAbsent(key, download);
+		if (running != null) {
+			return await(running);
+		}
+		try {
+			download.complete(locked(key, () -> delegate.checkDistribution(distribution)));
+		} catch (IOException | RuntimeException e) {
+			download.completeExceptionally(e);
+		} finally {
+			DOWNLOADS.remove(key, download);
+		}
+		return await(download);
+	}
+
+	@Override
+	public IExtractedFileSet extractFileSet(final Distribution distribution) throws IOException {
+		// each caller gets its own copy of the executable, so only the extraction is serialized
+		return locked(keyOf(distribution), () -> delegate.extractFileSet(distribution));
+	}
+
+	@Override
+	public void removeFileSet(Distribution distribution, IExtractedFileSet files) {
+		delegate.removeFileSet(distribution, files);
+	}
+
+	private <T> T locked(String key, LockedAction<T> action) throws IOException {
+		ReentrantLock lock = LOCKS.computeIfAbsent(key, k -> new ReentrantLock());
+		lock.lock();
+		try {
+			File dir = new File(lockDir.asFile(), LOCK_DIR);
+			if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+				throw new IOException("could not create " + dir);
+			}
+			try (FileChannel channel = FileChannel.open(new File(dir, key + ".lock").toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE);
+					FileLock fileLock = channel.lock()) {
+				return action.run();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static boolean await(CompletableFuture<Boolean> download) throws IOException {
+		try {
+			return download.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while waiting for download of other thread", e);
+		}
+	}
+
+	static String keyOf(Distribution distribution) {
+		return distribution.toString().replaceAll("[^a-zA-Z0-9._-]", "_");
+	}
+
+	interface LockedAction<T> {
+		T run() throws IOException;
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.tests;
+
+import java.lang.reflect.Constructor;
+import java.net.UnknownHostException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.MongoClient;
+import com.mongodb.ServerAddress;
+
+import de.flapdoodle.embed.mongo.config.Net;
+
+/**
+ * Creates clients for locally started processes.
+ *
+ * Unix domain sockets need com.mongodb.UnixServerAddress (driver 3.7 and
+ * later, with jnr-unixsocket on the classpath). It is looked up at runtime,
+ * with an older driver the client connects over tcp to 127.0.0.1.
+ */
+abstract class LocalMongoClients {
+
+	private static final Logger logger = LoggerFactory.getLogger(LocalMongoClients.class);
+
+	static final String UNIX_SERVER_ADDRESS = "com.mongodb.UnixServerAddress";
+
+	private static final Constructor<? extends ServerAddress> unixServerAddress = unixServerAddressConstructor();
+
+	private LocalMongoClients() {
+		// no instance
+	}
+
+	static MongoClient newMongoClient(Net net) throws UnknownHostException {
+		return new MongoClient(serverAddress(net));
+	}
+
+	static ServerAddress serverAddress(Net net) throws UnknownHostException {
+		if (net.isUnixSocket() && unixServerAddress != null) {
+			try {
+				return unixServerAddress.newInstance(net.getUnixSocket().getAbsolutePath());
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				logger.warn("could not connect over {}, use tcp", net.getUnixSocket(), e);
+			}
+		}
+		return new ServerAddress(net.getServerAddress(), net.getPort());
+	}
+
+	static boolean unixSocketsSupported() {
+		return unixServerAddress != null;
+	}
+
+	private static Constructor<? extends ServerAddress> unixServerAddressConstructor() {
+		try {
+			return Class.forName(UNIX_SERVER_ADDRESS)
+				.asSubclass(ServerAddress.class)
+				.getConstructor(String.class);
+		} catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+			logger.debug("{} not available, unix domain sockets are not used", UNIX_SERVER_ADDRESS);
+			return null;
+		}
+	}
+}
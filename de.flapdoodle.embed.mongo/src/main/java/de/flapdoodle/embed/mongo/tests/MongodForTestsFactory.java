@@ -20,8 +20,10 @@
  */
 package de.flapdoodle.embed.mongo.tests;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.nio.file.Files;
 import java.util.UUID;
 
 import com.mongodb.Mongo;
@@ -31,7 +33,6 @@ import org.slf4j.LoggerFactory;
 
 import com.mongodb.DB;
 import com.mongodb.MongoClient;
-import com.mongodb.ServerAddress;
 
 import de.flapdoodle.embed.mongo.Command;
 import de.flapdoodle.embed.mongo.MongodExecutable;
@@ -39,9 +40,14 @@ import de.flapdoodle.embed.mongo.MongodProcess;
 import de.flapdoodle.embed.mongo.MongodStarter;
 import de.flapdoodle.embed.mongo.config.IMongodConfig;
 import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.config.PortAllocator;
+import de.flapdoodle.embed.mongo.config.PortAllocator.Reservation;
 import de.flapdoodle.embed.mongo.config.RuntimeConfigBuilder;
 import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
 import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.runtime.PortAlreadyInUseException;
+import de.flapdoodle.embed.process.runtime.Network;
 
 /**
  * This class encapsulates everything that would be needed to do embedded
@@ -57,9 +63,26 @@ public class MongodForTestsFactory {
 		return new MongodForTestsFactory(version);
 	}
 
-	private final MongodExecutable mongodExecutable;
+	/**
+	 * mongod listens on a unix domain socket in socketDir, tcp only on
+	 * 127.0.0.1, see {@link Net#unixSocket(File, int)}. socketDir is created
+	 * if missing, mongod does not create it.
+	 */
+	public static MongodForTestsFactory withUnixSocket(final IFeatureAwareVersion version, final File socketDir)
+			throws IOException {
+		Files.createDirectories(socketDir.toPath());
+		return new MongodForTestsFactory(version, socketDir);
+	}
+
+	static final int MAX_START_ATTEMPTS = 3;
+
+	private MongodExecutable mongodExecutable;
+
+	private MongodProcess mongodProcess;
+
+	private Reservation portReservation;
 
-	private final MongodProcess mongodProcess;
+	private File unixSocketDir;
 
 	/**
 	 * Create the testing utility using the latest production version of
@@ -77,26 +100,84 @@ public class MongodForTestsFactory {
 	 *            version of MongoDB.
 	 */
 	public MongodForTestsFactory(final IFeatureAwareVersion version) throws IOException {
+		this(version, null);
+	}
 
-		final MongodStarter runtime = MongodStarter.getInstance(new RuntimeConfigBuilder()
-			.defaultsWithLogger(Command.MongoD, logger)
-			.build());
-		mongodExecutable = runtime.prepare(newMongodConfig(version));
+	private MongodForTestsFactory(final IFeatureAwareVersion version, final File unixSocketDir) throws IOException {
+		this(version, unixSocketDir, PortAllocator.defaultInstance(), newRuntime());
+	}
+
+	MongodForTestsFactory(final IFeatureAwareVersion version, final File unixSocketDir,
+			final PortAllocator portAllocator, final MongodStarter runtime) throws IOException {
+		this.unixSocketDir = unixSocketDir;
+		for (int attempt = 1; mongodProcess == null; attempt++) {
+			portReservation = portAllocator.reserve();
+			MongodExecutable executable = null;
+			try {
+				executable = runtime.prepare(newMongodConfig(version));
+				mongodProcess = executable.start();
+				mongodExecutable = executable;
+			} catch (PortAlreadyInUseException e) {
+				if (attempt >= MAX_START_ATTEMPTS) {
+					throw e;
+				}
+				logger.warn("port {} was taken by another process, start again on another port", e.getPort());
+			} finally {
+				if (mongodProcess == null) {
+					if (executable != null) {
+						executable.stop();
+					}
+					releasePort();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create the testing utility with a complete mongod configuration, e.g.
+	 * one with a process listener that prepares the db dir.
+	 *
+	 * @param mongodConfig
+	 *            configuration of the started mongod.
+	 */
+	public MongodForTestsFactory(final IMongodConfig mongodConfig) throws IOException {
+		mongodExecutable = newRuntime().prepare(mongodConfig);
 		mongodProcess = mongodExecutable.start();
+	}
 
+	private static MongodStarter newRuntime() {
+		return MongodStarter.getInstance(new RuntimeConfigBuilder()
+			.defaultsWithLogger(Command.MongoD, logger)
+			.build());
 	}
 
+	/**
+	 * @return config for a mongod on the reserved port
+	 */
 	protected IMongodConfig newMongodConfig(final IFeatureAwareVersion version) throws IOException {
-		return new MongodConfigBuilder().version(version).build();
+		Net net = unixSocketDir != null
+				? Net.unixSocket(unixSocketDir, portReservation.port())
+				: new Net(portReservation.port(), Network.localhostIsIPv6());
+		return new MongodConfigBuilder()
+			.version(version)
+			.net(net)
+			.build();
+	}
+
+	/**
+	 * @return the configuration of the started mongod
+	 */
+	public IMongodConfig getMongodConfig() {
+		return mongodProcess.getConfig();
 	}
 
 	/**
-	 * Creates a new Mongo connection.
+	 * Creates a new Mongo connection, over the unix domain socket if the
+	 * driver supports it and mongod was started with one.
 	 * 
 	 */
 	public MongoClient newMongo() throws UnknownHostException {
-		return new MongoClient(new ServerAddress(mongodProcess.getConfig().net().getServerAddress(),
-				mongodProcess.getConfig().net().getPort()));
+		return LocalMongoClients.newMongoClient(mongodProcess.getConfig().net());
 	}
 	
 	/**
@@ -120,5 +201,23 @@ public class MongodForTestsFactory {
 	public void shutdown() {
 		mongodProcess.stop();
 		mongodExecutable.stop();
+		releasePort();
+	}
+
+	private void releasePort() {
+		if (portReservation != null) {
+			try {
+				portReservation.close();
+			} catch (IOException e) {
+				logger.warn("could not release port {}", portReservation.port(), e);
+			}
+		}
+	}
+
+	/**
+	 * @return true if mongod exited after the shutdown command
+	 */
+	boolean isStoppedCleanly() {
+		return mongodProcess.isStoppedCleanly();
 	}
 }
@@ -0,0 +1,254 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.tests;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.MongoClient;
+
+import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
+import de.flapdoodle.embed.mongo.distribution.Version;
+
+/**
+ * Keeps a fixed number of started mongod processes warm and hands them out
+ * to tests. A returned instance is cleaned by dropping all user databases,
+ * so the next lease gets an empty server without paying the startup cost
+ * again.
+ */
+public class MongodForTestsPool {
+
+	private static final Logger logger = LoggerFactory.getLogger(MongodForTestsPool.class
+			.getName());
+
+	static final Set<String> SYSTEM_DATABASES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("admin", "local", "config")));
+
+	private static final long POLL_INTERVAL_IN_MS = 100;
+
+	public static MongodForTestsPool with(final IFeatureAwareVersion version, int size)
+			throws IOException {
+		return new MongodForTestsPool(version, size);
+	}
+
+	private final IFeatureAwareVersion version;
+
+	private final List<MongodForTestsFactory> instances = new ArrayList<>();
+
+	private final BlockingQueue<MongodForTestsFactory> idle = new LinkedBlockingQueue<>();
+
+	/**
+	 * guarded by instances
+	 */
+	private final Set<MongodForTestsFactory> leased = new HashSet<>();
+
+	private volatile boolean shutdown = false;
+
+	/**
+	 * Create a pool of mongod processes using the latest production version of
+	 * MongoDB.
+	 *
+	 * @param size
+	 *            number of processes to keep warm
+	 */
+	public MongodForTestsPool(int size) throws IOException {
+		this(Version.Main.PRODUCTION, size);
+	}
+
+	/**
+	 * Create a pool of mongod processes using the specified version of MongoDB.
+	 *
+	 * @param version
+	 *            version of MongoDB.
+	 * @param size
+	 *            number of processes to keep warm
+	 */
+	public MongodForTestsPool(final IFeatureAwareVersion version, int size) throws IOException {
+		if (size < 1) {
+			throw new IllegalArgumentException("pool size must be at least 1: " + size);
+		}
+		this.version = version;
+		try {
+			for (int i = 0; i < size; i++) {
+				MongodForTestsFactory instance = newInstance(version);
+				instances.add(instance);
+				idle.add(instance);
+			}
+		} catch (IOException | RuntimeException e) {
+			shutdown();
+			throw e;
+		}
+	}
+
+	protected MongodForTestsFactory newInstance(final IFeatureAwareVersion version) throws IOException {
+		return new MongodForTestsFactory(version);
+	}
+
+	/**
+	 * Takes an idle mongod out of the pool, waits until one is given back if
+	 * all are in use.
+	 *
+	 * @throws IllegalStateException if the pool is shut down, also while
+	 *             waiting, or has no mongod left
+	 */
+	public MongodForTestsFactory lease() throws InterruptedException {
+		MongodForTestsFactory ret = null;
+		while (ret == null) {
+			checkUsable();
+			ret = idle.poll(POLL_INTERVAL_IN_MS, TimeUnit.MILLISECONDS);
+		}
+		return leased(ret);
+	}
+
+	/**
+	 * Takes an idle mongod out of the pool.
+	 *
+	 * @return null if no mongod was given back in time
+	 * @throws IllegalStateException if the pool is shut down, also while
+	 *             waiting, or has no mongod left
+	 */
+	public MongodForTestsFactory lease(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		MongodForTestsFactory ret = null;
+		while (ret == null) {
+			checkUsable();
+			long left = deadline - System.nanoTime();
+			if (left <= 0) {
+				return null;
+			}
+			ret = idle.poll(Math.min(left, TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_IN_MS)), TimeUnit.NANOSECONDS);
+		}
+		return leased(ret);
+	}
+
+	private MongodForTestsFactory leased(MongodForTestsFactory instance) {
+		synchronized (instances) {
+			// shutdown() may have stopped it since it was taken from the queue
+			checkNotShutdown();
+			leased.add(instance);
+		}
+		return instance;
+	}
+
+	/**
+	 * Gives a leased mongod back. All user databases are dropped before the
+	 * process is handed out again. If this fails the process is replaced by a
+	 * fresh one.
+	 *
+	 * @throws IllegalArgumentException if the instance is not leased from this
+	 *             pool, e.g. released twice
+	 * @throws IOException if no replacement could be started, the pool has one
+	 *             mongod less then
+	 */
+	public void release(MongodForTestsFactory instance) throws IOException {
+		synchronized (instances) {
+			if (shutdown) {
+				return;
+			}
+			if (!leased.remove(instance)) {
+				throw new IllegalArgumentException("not leased from this pool: " + instance);
+			}
+		}
+		try {
+			clean(instance);
+		} catch (IOException | RuntimeException e) {
+			logger.warn("could not clean mongod, replace it with a new one", e);
+			replace(instance);
+			return;
+		}
+		synchronized (instances) {
+			// after a shutdown() the instance is already stopped
+			if (!shutdown) {
+				idle.add(instance);
+			}
+		}
+	}
+
+	protected void clean(MongodForTestsFactory instance) throws IOException {
+		dropUserDatabases(instance);
+	}
+
+	private void replace(MongodForTestsFactory instance) throws IOException {
+		synchronized (instances) {
+			instances.remove(instance);
+		}
+		instance.shutdown();
+		MongodForTestsFactory replacement = newInstance(version);
+		synchronized (instances) {
+			if (!shutdown) {
+				instances.add(replacement);
+				idle.add(replacement);
+				return;
+			}
+		}
+		replacement.shutdown();
+	}
+
+	/**
+	 * Cleans up all processes of this pool, leased or not.
+	 */
+	public void shutdown() {
+		synchronized (instances) {
+			shutdown = true;
+			idle.clear();
+			leased.clear();
+			for (MongodForTestsFactory instance : instances) {
+				instance.shutdown();
+			}
+			instances.clear();
+		}
+	}
+
+	private void checkNotShutdown() {
+		if (shutdown) {
+			throw new IllegalStateException("pool already shut down");
+		}
+	}
+
+	private void checkUsable() {
+		synchronized (instances) {
+			checkNotShutdown();
+			if (instances.isEmpty()) {
+				throw new IllegalStateException("no mongod left in pool, all replacements failed");
+			}
+		}
+	}
+
+	static void dropUserDatabases(MongodForTestsFactory instance) throws IOException {
+		try (MongoClient mongo = instance.newMongo()) {
+			for (String name : mongo.listDatabaseNames()) {
+				if (!SYSTEM_DATABASES.contains(name)) {
+					mongo.getDatabase(name).drop();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.tests;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.flapdoodle.embed.mongo.config.IMongodConfig;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.config.Timeout;
+import de.flapdoodle.embed.mongo.config.processlistener.MaterializeDbTemplateBeforeProcessStart;
+import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
+import de.flapdoodle.embed.process.io.file.Files;
+
+/**
+ * Loads fixtures once into a template db dir and starts any number of mongod
+ * processes on cheap copies of it (reflink, hardlinks or parallel copies, see
+ * {@link MaterializeDbTemplateBeforeProcessStart}).
+ *
+ * The template is built by the first caller, other callers, in this or in
+ * other JVMs, wait for it and reuse it. A template is only marked complete
+ * after the mongod that built it exited on the shutdown command, and the
+ * marker records the version, so a template of another version is built
+ * again.
+ */
+public class MongodForTestsTemplate {
+
+	private static final Logger logger = LoggerFactory.getLogger(MongodForTestsTemplate.class
+			.getName());
+
+	static final String COMPLETE_SUFFIX = ".complete";
+	static final String LOCK_SUFFIX = ".lock";
+	static final String VERSION = "version";
+	static final String MONGOD_LOCK = "mongod.lock";
+
+	private static final long SHUTDOWN_TIMEOUT_IN_MS = 30000;
+
+	/**
+	 * Fills the template, e.g. with inserts or by running
+	 * MongoRestoreExecutable or MongoImportExecutable against
+	 * {@code template.getMongodConfig().net()}.
+	 */
+	public interface IFixtureLoader {
+		void load(MongodForTestsFactory template) throws IOException;
+	}
+
+	private final IFeatureAwareVersion version;
+	private final File templateDir;
+
+	/**
+	 * Builds the template in templateDir unless an earlier run already did.
+	 */
+	public static MongodForTestsTemplate prepare(final IFeatureAwareVersion version, File templateDir,
+			IFixtureLoader fixtureLoader) throws IOException {
+		File complete = new File(templateDir.getPath() + COMPLETE_SUFFIX);
+		synchronized (MongodForTestsTemplate.class) {
+			try (RandomAccessFile lockFile = new RandomAccessFile(templateDir.getPath() + LOCK_SUFFIX, "rw");
+					FileChannel channel = lockFile.getChannel();
+					FileLock lock = channel.lock()) {
+				String builtWith = builtWith(complete);
+				if (version.asInDownloadPath().equals(builtWith)) {
+					logger.info("reuse template {}", templateDir);
+				} else {
+					if (builtWith != null) {
+						logger.info("template {} was built with {}, build it again with {}", templateDir, builtWith,
+								version.asInDownloadPath());
+					}
+					java.nio.file.Files.deleteIfExists(complete.toPath());
+					build(version, templateDir, fixtureLoader);
+					markComplete(complete, version);
+				}
+			}
+		}
+		return new MongodForTestsTemplate(version, templateDir);
+	}
+
+	private static void build(final IFeatureAwareVersion version, File templateDir, IFixtureLoader fixtureLoader)
+			throws IOException {
+		if (templateDir.exists() && !Files.forceDelete(templateDir)) {
+			throw new IOException("could not delete incomplete template " + templateDir);
+		}
+		if (!templateDir.mkdirs()) {
+			throw new IOException("could not create " + templateDir);
+		}
+
+		long start = System.currentTimeMillis();
+		IMongodConfig config = new MongodConfigBuilder()
+			.version(version)
+			.replication(new Storage(templateDir.getAbsolutePath(), null, 0))
+			.timeout(new Timeout(new Timeout().getStartupTimeout(), SHUTDOWN_TIMEOUT_IN_MS))
+			.build();
+		MongodForTestsFactory template = new MongodForTestsFactory(config);
+		try {
+			fixtureLoader.load(template);
+		} finally {
+			// sends the shutdown command, so the db files are consistent
+			template.shutdown();
+		}
+		if (!template.isStoppedCleanly()) {
+			throw new IOException("mongod did not exit on the shutdown command, template " + templateDir + " is not usable");
+		}
+		File mongodLock = new File(templateDir, MONGOD_LOCK);
+		if (mongodLock.length() > 0) {
+			// mongod empties its lock file on a clean shutdown
+			throw new IOException("mongod did not shut down cleanly, template " + templateDir + " is not usable");
+		}
+		logger.info("built template {} in {}ms", templateDir, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * @return the version the template was built with, null if it is not complete
+	 */
+	static String builtWith(File complete) throws IOException {
+		if (!complete.isFile()) {
+			return null;
+		}
+		Properties marker = new Properties();
+		try (InputStream in = new FileInputStream(complete)) {
+			marker.load(in);
+		}
+		return marker.getProperty(VERSION);
+	}
+
+	private static void markComplete(File complete, IFeatureAwareVersion version) throws IOException {
+		Properties marker = new Properties();
+		marker.setProperty(VERSION, version.asInDownloadPath());
+		try (OutputStream out = new FileOutputStream(complete)) {
+			marker.store(out, "complete template");
+		}
+	}
+
+	MongodForTestsTemplate(final IFeatureAwareVersion version, File templateDir) {
+		this.version = version;
+		this.templateDir = templateDir;
+	}
+
+	public File templateDir() {
+		return templateDir;
+	}
+
+	/**
+	 * Starts a new mongod on a temporary copy of the template. The copy is
+	 * deleted on {@link MongodForTestsFactory#shutdown()}.
+	 */
+	public MongodForTestsFactory fork() throws IOException {
+		return new MongodForTestsFactory(newForkConfig());
+	}
+
+	protected IMongodConfig newForkConfig() throws IOException {
+		return new MongodConfigBuilder()
+			.version(version)
+			.processListener(new MaterializeDbTemplateBeforeProcessStart(templateDir))
+			.build();
+	}
+}
@@ -29,9 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import com.mongodb.DB;
 import com.mongodb.Mongo;
-import com.mongodb.MongoClient;
 import com.mongodb.MongoException;
-import com.mongodb.ServerAddress;
 
 import de.flapdoodle.embed.mongo.Command;
 import de.flapdoodle.embed.mongo.MongosExecutable;
@@ -121,8 +119,7 @@ public class MongosForTestsFactory {
 	 * @throws UnknownHostException
 	 */
 	public Mongo newMongo() throws UnknownHostException, MongoException {
-		return new MongoClient(new ServerAddress(mongosProcess.getConfig().net().getServerAddress(),
-				mongosProcess.getConfig().net().getPort()));
+		return LocalMongoClients.newMongoClient(mongosProcess.getConfig().net());
 	}
 	
 	/**
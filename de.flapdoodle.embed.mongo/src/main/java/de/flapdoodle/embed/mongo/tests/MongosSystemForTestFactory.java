@@ -20,11 +20,18 @@
  */
 package de.flapdoodle.embed.mongo.tests;
 
+import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,6 +69,10 @@ public class MongosSystemForTestFactory {
 	public static final String REPLICA_SET_NAME = "rep1";
 	public static final String OPLOG_COLLECTION = "oplog.rs";
 
+	static final long REPLICA_SET_STARTUP_TIMEOUT_IN_MS = 60000;
+	static final long MIN_STATUS_POLL_INTERVAL_IN_MS = 50;
+	static final long MAX_STATUS_POLL_INTERVAL_IN_MS = 1000;
+
 	private final IMongosConfig config;
 	private final Map<String, List<IMongodConfig>> replicaSets;
 	private final List<IMongodConfig> configServers;
@@ -87,19 +98,97 @@ public class MongosSystemForTestFactory {
 	}
 
 	public void start() throws Throwable {
-		this.mongodProcessList = new ArrayList<>();
-		this.mongodConfigProcessList = new ArrayList<>();
+		this.mongodProcessList = Collections.synchronizedList(new ArrayList<MongodProcess>());
+		this.mongodConfigProcessList = Collections.synchronizedList(new ArrayList<MongodProcess>());
 		for (Entry<String, List<IMongodConfig>> entry : replicaSets.entrySet()) {
-			initializeReplicaSet(entry);
+			checkReplicaSet(entry);
 		}
 		for (IMongodConfig config : configServers) {
-			initializeConfigServer(config);
+			checkConfigServer(config);
+		}
+
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			// start every member and config server at the same time
+			List<Callable<MongodProcess>> starts = new ArrayList<>();
+			for (List<IMongodConfig> mongoConfigList : replicaSets.values()) {
+				for (IMongodConfig mongoConfig : mongoConfigList) {
+					starts.add(() -> startMongod(mongoConfig));
+				}
+			}
+			int members = starts.size();
+			for (IMongodConfig config : configServers) {
+				starts.add(() -> startMongod(config));
+			}
+			List<MongodProcess> started = startAll(executor, starts);
+			mongodProcessList.addAll(started.subList(0, members));
+			mongodConfigProcessList.addAll(started.subList(members, started.size()));
+
+			List<Future<?>> replicaSetsInitialized = new ArrayList<>();
+			for (Entry<String, List<IMongodConfig>> entry : replicaSets.entrySet()) {
+				replicaSetsInitialized.add(executor.submit(() -> {
+					initializeReplicaSet(entry);
+					return null;
+				}));
+			}
+			Throwable failure = null;
+			for (Future<?> initialized : replicaSetsInitialized) {
+				try {
+					initialized.get();
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		} finally {
+			executor.shutdownNow();
 		}
 		initializeMongos();
 		configureMongos();
 	}
 
-	private void initializeReplicaSet(Entry<String, List<IMongodConfig>> entry)
+	private static MongodProcess startMongod(IMongodConfig config) throws IOException {
+		MongodExecutable mongodExe = MongodStarter.getDefaultInstance().prepare(config);
+		return mongodExe.start();
+	}
+
+	/**
+	 * Runs all starts at the same time and waits for every one of them. If one
+	 * fails, all processes that did start are stopped before the first failure
+	 * is rethrown.
+	 *
+	 * @return the started processes in the order of the starts
+	 */
+	static List<MongodProcess> startAll(ExecutorService executor, List<Callable<MongodProcess>> starts) throws Throwable {
+		List<Future<MongodProcess>> futures = new ArrayList<>();
+		for (Callable<MongodProcess> start : starts) {
+			futures.add(executor.submit(start));
+		}
+		List<MongodProcess> started = new ArrayList<>();
+		Throwable failure = null;
+		for (Future<MongodProcess> future : futures) {
+			try {
+				started.add(future.get());
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause();
+				}
+			}
+		}
+		if (failure != null) {
+			for (MongodProcess process : started) {
+				process.stop();
+			}
+			throw failure;
+		}
+		return started;
+	}
+
+	private void checkReplicaSet(Entry<String, List<IMongodConfig>> entry)
 			throws Exception {
 		String replicaName = entry.getKey();
 		List<IMongodConfig> mongoConfigList = entry.getValue();
@@ -108,64 +197,68 @@ public class MongosSystemForTestFactory {
 			throw new Exception(
 					"A replica set must contain at least 3 members.");
 		}
-		// Create 3 mongod processes
 		for (IMongodConfig mongoConfig : mongoConfigList) {
 			if (!mongoConfig.replication().getReplSetName().equals(replicaName)) {
 				throw new Exception(
 						"Replica set name must match in mongo configuration");
 			}
-			MongodStarter starter = MongodStarter.getDefaultInstance();
-			MongodExecutable mongodExe = starter.prepare(mongoConfig);
-			MongodProcess process = mongodExe.start();
-			mongodProcessList.add(process);
 		}
-		Thread.sleep(1000);
+	}
+
+	private void initializeReplicaSet(Entry<String, List<IMongodConfig>> entry)
+			throws Exception {
+		String replicaName = entry.getKey();
+		List<IMongodConfig> mongoConfigList = entry.getValue();
+
 		MongoClientOptions mo = MongoClientOptions.builder()
 				.connectTimeout(10)
 				.build();
-		MongoClient mongo = new MongoClient(new ServerAddress(mongoConfigList.get(0).net()
+		try (MongoClient mongo = new MongoClient(new ServerAddress(mongoConfigList.get(0).net()
 				.getServerAddress().getHostName(), mongoConfigList.get(0).net()
-				.getPort()), mo);
-		DB mongoAdminDB = mongo.getDB(ADMIN_DATABASE_NAME);
-
-		CommandResult cr = mongoAdminDB
-				.command(new BasicDBObject("isMaster", 1));
-		logger.info("isMaster: {}", cr);
-
-		// Build BSON object replica set settings
-		DBObject replicaSetSetting = new BasicDBObject();
-		replicaSetSetting.put("_id", replicaName);
-		BasicDBList members = new BasicDBList();
-		int i = 0;
-		for (IMongodConfig mongoConfig : mongoConfigList) {
-			DBObject host = new BasicDBObject();
-			host.put("_id", i++);
-			host.put("host", mongoConfig.net().getServerAddress().getHostName()
-					+ ":" + mongoConfig.net().getPort());
-			members.add(host);
-		}
+				.getPort()), mo)) {
+			DB mongoAdminDB = mongo.getDB(ADMIN_DATABASE_NAME);
+
+			CommandResult cr = mongoAdminDB
+					.command(new BasicDBObject("isMaster", 1));
+			logger.info("isMaster: {}", cr);
+
+			// Build BSON object replica set settings
+			DBObject replicaSetSetting = new BasicDBObject();
+			replicaSetSetting.put("_id", replicaName);
+			BasicDBList members = new BasicDBList();
+			int i = 0;
+			for (IMongodConfig mongoConfig : mongoConfigList) {
+				DBObject host = new BasicDBObject();
+				host.put("_id", i++);
+				host.put("host", mongoConfig.net().getServerAddress().getHostName()
+						+ ":" + mongoConfig.net().getPort());
+				members.add(host);
+			}
 
-		replicaSetSetting.put("members", members);
-		logger.info(replicaSetSetting.toString());
-		// Initialize replica set
-		cr = mongoAdminDB.command(new BasicDBObject("replSetInitiate",
-				replicaSetSetting));
-		logger.info("replSetInitiate: {}", cr);
-
-		Thread.sleep(5000);
-		cr = mongoAdminDB.command(new BasicDBObject("replSetGetStatus", 1));
-		logger.info("replSetGetStatus: {}", cr);
-
-		// Check replica set status before to proceed
-		while (!isReplicaSetStarted(cr)) {
-			logger.info("Waiting for 3 seconds...");
-			Thread.sleep(1000);
+			replicaSetSetting.put("members", members);
+			logger.info(replicaSetSetting.toString());
+			// Initialize replica set
+			cr = mongoAdminDB.command(new BasicDBObject("replSetInitiate",
+					replicaSetSetting));
+			logger.info("replSetInitiate: {}", cr);
+
+			// Check replica set status before to proceed
+			long deadline = System.currentTimeMillis() + REPLICA_SET_STARTUP_TIMEOUT_IN_MS;
+			long pause = MIN_STATUS_POLL_INTERVAL_IN_MS;
 			cr = mongoAdminDB.command(new BasicDBObject("replSetGetStatus", 1));
 			logger.info("replSetGetStatus: {}", cr);
+			while (!isReplicaSetStarted(cr)) {
+				if (System.currentTimeMillis() > deadline) {
+					throw new Exception("Replica set " + replicaName + " did not start within "
+							+ REPLICA_SET_STARTUP_TIMEOUT_IN_MS + "ms: " + cr);
+				}
+				logger.debug("Waiting for {}ms...", pause);
+				Thread.sleep(pause);
+				pause = Math.min(pause * 2, MAX_STATUS_POLL_INTERVAL_IN_MS);
+				cr = mongoAdminDB.command(new BasicDBObject("replSetGetStatus", 1));
+				logger.info("replSetGetStatus: {}", cr);
+			}
 		}
-
-		mongo.close();
-		mongo = null;
 	}
 
 	private boolean isReplicaSetStarted(BasicDBObject setting) {
@@ -187,15 +280,11 @@ public class MongosSystemForTestFactory {
 		return true;
 	}
 
-	private void initializeConfigServer(IMongodConfig config) throws Exception {
+	private void checkConfigServer(IMongodConfig config) throws Exception {
 		if (!config.isConfigServer()) {
 			throw new Exception(
 					"Mongo configuration is not a defined for a config server.");
 		}
-		MongodStarter starter = MongodStarter.getDefaultInstance();
-		MongodExecutable mongodExe = starter.prepare(config);
-		MongodProcess process = mongodExe.start();
-		mongodProcessList.add(process);
 	}
 
 	private void initializeMongos() throws Exception {
@@ -281,6 +370,8 @@ public class MongosSystemForTestFactory {
 		for (MongodProcess process : this.mongodConfigProcessList) {
 			process.stop();
 		}
-		this.mongosProcess.stop();
+		if (this.mongosProcess != null) {
+			this.mongosProcess.stop();
+		}
 	}
 }
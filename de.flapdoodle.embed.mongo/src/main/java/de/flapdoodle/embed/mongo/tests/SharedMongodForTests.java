@@ -0,0 +1,378 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.tests;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.MongoClient;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoDatabase;
+
+import de.flapdoodle.embed.mongo.Command;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.DownloadConfigBuilder;
+import de.flapdoodle.embed.mongo.config.ExtractedArtifactStoreBuilder;
+import de.flapdoodle.embed.mongo.config.IMongodConfig;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.config.RuntimeConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
+import de.flapdoodle.embed.mongo.runtime.Mongod;
+import de.flapdoodle.embed.mongo.runtime.ReadinessChecks;
+import de.flapdoodle.embed.mongo.store.StreamingExtractedArtifactStore.ExecutableMode;
+import de.flapdoodle.embed.process.io.file.Files;
+import de.flapdoodle.embed.process.io.progress.Slf4jProgressListener;
+
+/**
+ * One mongod shared by all JVMs on this machine, e.g. all surefire forks of a
+ * build. The first JVM that attaches starts the process and writes its port
+ * and pid into a registry file under the artifact store, later JVMs connect to
+ * the same process. Every attach records the pid of its JVM, the last
+ * {@link #detach()} stops the process. Users whose JVM is gone are dropped on
+ * every attach and detach, so a JVM that died without detaching does not keep
+ * the process running.
+ *
+ * The process is not bound to the JVM that started it, so it keeps running if
+ * that JVM exits first. Use {@link #newDatabase(MongoClient)} to keep the data
+ * of different tests apart.
+ */
+public class SharedMongodForTests {
+
+	private static final Logger logger = LoggerFactory.getLogger(SharedMongodForTests.class
+			.getName());
+
+	static final String PORT = "port";
+	static final String PID = "pid";
+	static final String USERS = "users";
+	static final String DB_DIR = "dbDir";
+
+	private static final long SHUTDOWN_TIMEOUT_IN_MS = 30000;
+	private static final long POLL_INTERVAL_IN_MS = 50;
+
+	private final File registry;
+	private final int port;
+	private final long pid;
+	private boolean detached = false;
+
+	/**
+	 * Attaches to the shared mongod of this version, registered under the
+	 * default artifact store.
+	 */
+	public static SharedMongodForTests attach(final IFeatureAwareVersion version) throws IOException {
+		File artifactStore = new DownloadConfigBuilder().defaultsForCommand(Command.MongoD).build()
+			.getArtifactStorePath().asFile();
+		return attach(version, new File(artifactStore, "shared"));
+	}
+
+	public static SharedMongodForTests attach(final IFeatureAwareVersion version, File registryDir) throws IOException {
+		if (!registryDir.isDirectory() && !registryDir.mkdirs()) {
+			throw new IOException("could not create " + registryDir);
+		}
+		File registry = new File(registryDir, "mongod-" + version.asInDownloadPath() + ".properties");
+		synchronized (SharedMongodForTests.class) {
+			try (FileChannel channel = lockChannel(registry); FileLock lock = channel.lock()) {
+				Properties entry = read(registry);
+				List<Long> users;
+				if (entry != null && isRunning(Integer.parseInt(entry.getProperty(PORT)))) {
+					users = alive(users(entry));
+					users.add(ownPid());
+					logger.info("attach to shared mongod on port {}, {} users", entry.getProperty(PORT), users.size());
+				} else {
+					if (entry != null) {
+						logger.warn("shared mongod on port {} is gone, start a new one", entry.getProperty(PORT));
+						deleteDbDir(entry);
+					}
+					entry = start(version, registry);
+					users = new ArrayList<>(Collections.singletonList(ownPid()));
+				}
+				users(entry, users);
+				write(registry, entry);
+				return new SharedMongodForTests(registry, Integer.parseInt(entry.getProperty(PORT)),
+						Long.parseLong(entry.getProperty(PID)));
+			}
+		}
+	}
+
+	private static Properties start(final IFeatureAwareVersion version, File registry) throws IOException {
+		String name = registry.getName().substring(0, registry.getName().length() - ".properties".length());
+		File dbDir = new File(registry.getParentFile(), name + "-" + UUID.randomUUID());
+		File pidFile = new File(registry.getParentFile(), name + ".pid");
+		File logFile = new File(registry.getParentFile(), name + ".log");
+
+		IMongodConfig config = new MongodConfigBuilder()
+			.version(version)
+			.replication(new Storage(dbDir.getAbsolutePath(), null, 0))
+			// the starting JVM may exit first, so the process must not write to its pipes
+			.withLaunchArgument("--logpath", logFile.getAbsolutePath())
+			.withLaunchArgument("--pidfilepath", pidFile.getAbsolutePath())
+			.readinessCheck(ReadinessChecks.wireProtocol())
+			.build();
+		// not a daemon: no shutdown hook stops the process when this JVM exits.
+		// The executable is never stopped either, so it runs the extracted file
+		// in place instead of a temp copy that nobody would delete.
+		MongodStarter.getInstance(new RuntimeConfigBuilder()
+			.defaultsWithLogger(Command.MongoD, logger)
+			.artifactStore(new ExtractedArtifactStoreBuilder()
+				.defaults(Command.MongoD)
+				.download(new DownloadConfigBuilder()
+					.defaultsForCommand(Command.MongoD)
+					.progressListener(new Slf4jProgressListener(logger))
+					.build())
+				.executableMode(ExecutableMode.SHARED))
+			.daemonProcess(false)
+			.build())
+			.prepare(config)
+			.start();
+
+		Properties entry = new Properties();
+		entry.setProperty(PORT, String.valueOf(config.net().getPort()));
+		entry.setProperty(PID, String.valueOf(readPid(pidFile)));
+		entry.setProperty(DB_DIR, dbDir.getAbsolutePath());
+		logger.info("started shared mongod on port {}, pid {}", entry.getProperty(PORT), entry.getProperty(PID));
+		return entry;
+	}
+
+	SharedMongodForTests(File registry, int port, long pid) {
+		this.registry = registry;
+		this.port = port;
+		this.pid = pid;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * @return pid of the shared mongod, -1 if unknown
+	 */
+	public long getPid() {
+		return pid;
+	}
+
+	/**
+	 * Creates a new Mongo connection.
+	 */
+	public MongoClient newMongo() throws UnknownHostException {
+		return new MongoClient(new ServerAddress(localhost(), port));
+	}
+
+	/**
+	 * Creates a new DB with unique name for connection.
+	 */
+	public MongoDatabase newDatabase(MongoClient mongo) {
+		return mongo.getDatabase(UUID.randomUUID().toString());
+	}
+
+	/**
+	 * Releases this reference, stops the shared mongod if it was the last one.
+	 */
+	public void detach() throws IOException {
+		synchronized (SharedMongodForTests.class) {
+			if (detached) {
+				return;
+			}
+			detached = true;
+			try (FileChannel channel = lockChannel(registry); FileLock lock = channel.lock()) {
+				Properties entry = read(registry);
+				if (entry == null || Integer.parseInt(entry.getProperty(PORT)) != port) {
+					logger.warn("shared mongod on port {} is not registered anymore", port);
+					return;
+				}
+				List<Long> users = users(entry);
+				users.remove(Long.valueOf(ownPid()));
+				users = alive(users);
+				if (!users.isEmpty()) {
+					users(entry, users);
+					write(registry, entry);
+					logger.info("detach from shared mongod on port {}, {} users left", port, users.size());
+				} else {
+					stop(port);
+					deleteDbDir(entry);
+					if (!registry.delete()) {
+						logger.warn("could not delete {}", registry);
+					}
+				}
+			}
+		}
+	}
+
+	private static void stop(int port) throws IOException {
+		logger.info("last user detached, stop shared mongod on port {}", port);
+		Mongod.sendShutdownCommand(localhost(), port);
+		long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_IN_MS;
+		while (isRunning(port)) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new IOException("shared mongod on port " + port + " did not stop within " + SHUTDOWN_TIMEOUT_IN_MS + "ms");
+			}
+			try {
+				Thread.sleep(POLL_INTERVAL_IN_MS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("interrupted", e);
+			}
+		}
+	}
+
+	static boolean isRunning(int port) throws UnknownHostException {
+		return Mongod.sendIsMaster(localhost(), port);
+	}
+
+	private static InetAddress localhost() throws UnknownHostException {
+		return new Net(0, false).getServerAddress();
+	}
+
+	private static void deleteDbDir(Properties entry) {
+		File dbDir = new File(entry.getProperty(DB_DIR));
+		if (dbDir.exists() && !Files.forceDelete(dbDir)) {
+			logger.warn("could not delete {}", dbDir);
+		}
+	}
+
+	private static long readPid(File pidFile) {
+		try {
+			return Long.parseLong(new String(java.nio.file.Files.readAllBytes(pidFile.toPath()), StandardCharsets.UTF_8).trim());
+		} catch (IOException | NumberFormatException e) {
+			logger.debug("could not read {}", pidFile, e);
+			return -1;
+		}
+	}
+
+	/**
+	 * The registry is locked against other JVMs via its lock file.
+	 */
+	private static FileChannel lockChannel(File registry) throws IOException {
+		return FileChannel.open(new File(registry.getPath() + ".lock").toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * @return pids of the attached JVMs, once per attach
+	 */
+	static List<Long> users(Properties entry) {
+		List<Long> ret = new ArrayList<>();
+		for (String user : entry.getProperty(USERS, "").split(",")) {
+			if (!user.isEmpty()) {
+				ret.add(Long.parseLong(user));
+			}
+		}
+		return ret;
+	}
+
+	private static void users(Properties entry, List<Long> users) {
+		StringBuilder sb = new StringBuilder();
+		for (Long user : users) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			sb.append(user);
+		}
+		entry.setProperty(USERS, sb.toString());
+	}
+
+	static List<Long> alive(List<Long> users) {
+		List<Long> ret = new ArrayList<>();
+		for (Long user : users) {
+			if (isAlive(user)) {
+				ret.add(user);
+			} else {
+				logger.warn("jvm with pid {} is gone without detach, drop it", user);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return false only if the process is known to be gone
+	 */
+	static boolean isAlive(long pid) {
+		if (pid == -1 || pid == ownPid()) {
+			return true;
+		}
+		File proc = new File("/proc");
+		if (proc.isDirectory()) {
+			return new File(proc, String.valueOf(pid)).exists();
+		}
+		try {
+			return new ProcessBuilder("kill", "-0", String.valueOf(pid)).start().waitFor() == 0;
+		} catch (IOException e) {
+			// no kill command, e.g. on windows
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return true;
+		}
+	}
+
+	/**
+	 * @return pid of this JVM, -1 if unknown
+	 */
+	static long ownPid() {
+		String name = ManagementFactory.getRuntimeMXBean().getName();
+		int at = name.indexOf('@');
+		try {
+			return at > 0 ? Long.parseLong(name.substring(0, at)) : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	static Properties read(File registry) throws IOException {
+		if (!registry.isFile()) {
+			return null;
+		}
+		Properties entry = new Properties();
+		try (InputStream in = new FileInputStream(registry)) {
+			entry.load(in);
+		}
+		return entry;
+	}
+
+	private static void write(File registry, Properties entry) throws IOException {
+		File tmp = new File(registry.getPath() + ".tmp");
+		try (OutputStream out = new FileOutputStream(tmp)) {
+			entry.store(out, "shared mongod");
+		}
+		java.nio.file.Files.move(tmp.toPath(), registry.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+}
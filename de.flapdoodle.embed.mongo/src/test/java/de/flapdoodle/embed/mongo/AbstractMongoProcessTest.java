@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongPredicate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AbstractMongoProcessTest {
+
+	private static final long TIMEOUT = 500;
+
+	private final List<String> steps = new ArrayList<>();
+	private Process process;
+
+	@Before
+	public void posixShell() {
+		assumeTrue(new File("/bin/sh").canExecute());
+	}
+
+	@After
+	public void killProcess() {
+		if (process != null) {
+			process.destroyForcibly();
+		}
+	}
+
+	@Test
+	public void processExitingOnShutdownIsStoppedCleanly() throws IOException {
+		process = new ProcessBuilder("sleep", "60").start();
+
+		boolean stoppedCleanly = AbstractMongoProcess.stopAndWaitForExit(TIMEOUT, step("shutdown", process::destroy),
+				step("kill", process::destroy), step("hardKill", process::destroyForcibly), exitedWithin(process));
+
+		assertTrue(stoppedCleanly);
+		assertEquals(Arrays.asList("shutdown"), steps);
+		assertFalse(process.isAlive());
+	}
+
+	@Test
+	public void processIgnoringShutdownIsKilledAfterTimeout() throws IOException {
+		// like a mongod that does not react to the shutdown command or a SIGTERM
+		process = new ProcessBuilder("/bin/sh", "-c", "trap '' TERM INT; while true; do sleep 1; done").start();
+
+		boolean stoppedCleanly = AbstractMongoProcess.stopAndWaitForExit(TIMEOUT, step("shutdown", () -> {
+		}), step("kill", process::destroy), step("hardKill", process::destroyForcibly), exitedWithin(process));
+
+		assertFalse(stoppedCleanly);
+		assertEquals(Arrays.asList("shutdown", "kill", "hardKill"), steps);
+		assertFalse(process.isAlive());
+	}
+
+	private BooleanSupplier step(String name, Runnable action) {
+		return () -> {
+			steps.add(name);
+			action.run();
+			return true;
+		};
+	}
+
+	private static LongPredicate exitedWithin(Process process) {
+		return timeoutInMs -> {
+			try {
+				return process.waitFor(timeoutInMs, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		};
+	}
+}
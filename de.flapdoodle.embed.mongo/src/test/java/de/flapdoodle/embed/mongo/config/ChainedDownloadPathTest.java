@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mortbay.jetty.Request;
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.handler.AbstractHandler;
+
+import de.flapdoodle.embed.process.config.store.DownloadPath;
+import de.flapdoodle.embed.process.config.store.HttpProxyFactory;
+import de.flapdoodle.embed.process.config.store.IPackageResolver;
+import de.flapdoodle.embed.process.distribution.BitSize;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.distribution.GenericVersion;
+import de.flapdoodle.embed.process.distribution.Platform;
+
+public class ChainedDownloadPathTest {
+
+	private static final String ARCHIVE = "mongodb-test.tgz";
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private final Distribution distribution = new Distribution(new GenericVersion("3.4.2"), Platform.Linux, BitSize.B64);
+	private final MirrorHandler handler = new MirrorHandler();
+	private IPackageResolver packageResolver;
+	private Server server;
+	private String httpMirror;
+	private String fileMirror;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new Server(0);
+		server.setHandler(handler);
+		server.start();
+		httpMirror = "http://localhost:" + server.getConnectors()[0].getLocalPort() + "/";
+
+		File mirrorDir = temp.newFolder("mirror");
+		assertTrue(new File(mirrorDir, ARCHIVE).createNewFile());
+		fileMirror = mirrorDir.toURI().toString();
+
+		packageResolver = mock(IPackageResolver.class);
+		when(packageResolver.getPath(distribution)).thenReturn(ARCHIVE);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+	}
+
+	@Test
+	public void fastMirrorAnswersFirst() {
+		ChainedDownloadPath path = new ChainedDownloadPath(packageResolver, new DownloadPath(httpMirror),
+				new DownloadPath(fileMirror));
+
+		assertEquals(httpMirror, path.getPath(distribution));
+		assertEquals(1, handler.requests.size());
+	}
+
+	@Test
+	public void slowMirrorIsHedgedAndWinnerIsRemembered() {
+		handler.delayInMs = 2000;
+		ChainedDownloadPath path = new ChainedDownloadPath(packageResolver, 50, Arrays.asList(new DownloadPath(httpMirror),
+				new DownloadPath(fileMirror)));
+
+		long start = System.currentTimeMillis();
+		assertEquals(fileMirror, path.getPath(distribution));
+		assertTrue(System.currentTimeMillis() - start < handler.delayInMs);
+
+		assertEquals(fileMirror, path.getPath(distribution));
+		assertEquals(1, handler.requests.size());
+	}
+
+	@Test
+	public void missingArchiveFallsBackToNextMirror() {
+		handler.missing = true;
+		ChainedDownloadPath path = new ChainedDownloadPath(packageResolver, new DownloadPath(httpMirror),
+				new DownloadPath("file:///does/not/exist/"), new DownloadPath(fileMirror));
+
+		assertEquals(fileMirror, path.getPath(distribution));
+	}
+
+	@Test
+	public void lastMirrorIsUsedIfNoneHasTheArchive() {
+		handler.missing = true;
+		ChainedDownloadPath path = new ChainedDownloadPath(packageResolver, new DownloadPath(fileMirror + "empty/"),
+				new DownloadPath(httpMirror));
+
+		assertEquals(httpMirror, path.getPath(distribution));
+	}
+
+	@Test
+	public void archiveFoundNowhereIsProbedAgain() {
+		handler.missing = true;
+		ChainedDownloadPath path = new ChainedDownloadPath(packageResolver, new DownloadPath(httpMirror),
+				new DownloadPath(fileMirror + "empty/"));
+
+		assertEquals(fileMirror + "empty/", path.getPath(distribution));
+
+		handler.missing = false;
+		assertEquals(httpMirror, path.getPath(distribution));
+		assertEquals(2, handler.requests.size());
+	}
+
+	@Test
+	public void mirrorsAreProbedThroughProxy() {
+		// the jetty server acts as proxy, the host itself does not resolve
+		HttpProxyFactory proxy = new HttpProxyFactory("localhost", server.getConnectors()[0].getLocalPort());
+		ChainedDownloadPath path = new ChainedDownloadPath(packageResolver, proxy, 50,
+				Arrays.asList(new DownloadPath("http://mongodb.invalid/"), new DownloadPath(fileMirror + "empty/")));
+
+		assertEquals("http://mongodb.invalid/", path.getPath(distribution));
+		assertEquals(1, handler.requests.size());
+	}
+
+	static class MirrorHandler extends AbstractHandler {
+
+		final List<String> requests = new CopyOnWriteArrayList<>();
+		volatile long delayInMs = 0;
+		volatile boolean missing = false;
+
+		@Override
+		public void handle(String target, HttpServletRequest request, HttpServletResponse response, int dispatch)
+				throws IOException {
+			requests.add(request.getMethod() + " " + target);
+			if (delayInMs > 0) {
+				try {
+					Thread.sleep(delayInMs);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			response.setStatus(missing || !target.equals("/" + ARCHIVE)
+				? HttpServletResponse.SC_NOT_FOUND
+				: HttpServletResponse.SC_OK);
+			((Request) request).setHandled(true);
+		}
+	}
+}
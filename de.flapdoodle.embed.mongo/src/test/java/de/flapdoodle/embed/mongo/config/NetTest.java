@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+public class NetTest {
+
+	@Test
+	public void tcpNetHasNoUnixSocket() {
+		Net net = new Net(27017, false);
+		assertFalse(net.isUnixSocket());
+		assertNull(net.getUnixSocket());
+	}
+
+	@Test
+	public void unixSocketNetBindsTcpToLoopback() {
+		File dir = new File("/tmp/embedmongo");
+		Net net = Net.unixSocket(dir, 27017);
+
+		assertTrue(net.isUnixSocket());
+		assertEquals("127.0.0.1", net.getBindIp());
+		assertEquals(dir, net.getUnixSocketPrefix());
+		assertEquals(new File(dir, "mongodb-27017.sock"), net.getUnixSocket());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void socketPathLongerThanSunPathIsRejected() {
+		StringBuilder dir = new StringBuilder("/tmp/");
+		while (dir.length() <= Net.MAX_UNIX_SOCKET_PATH_LENGTH) {
+			dir.append("subdir/");
+		}
+		Net.unixSocket(new File(dir.toString()), 27017);
+	}
+}
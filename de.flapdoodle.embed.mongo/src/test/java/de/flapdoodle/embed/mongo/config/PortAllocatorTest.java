@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.flapdoodle.embed.mongo.config.PortAllocator.Reservation;
+
+public class PortAllocatorTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void reservedPortIsNotHandedOutTwice() throws Exception {
+		File lockDir = temp.newFolder();
+		int port = freePort();
+		PortAllocator first = new PortAllocator(lockDir, port, port);
+		PortAllocator second = new PortAllocator(lockDir, port, port);
+
+		try (Reservation reservation = first.reserve()) {
+			assertEquals(port, reservation.port());
+			try {
+				second.reserve();
+				fail("port is reserved");
+			} catch (IOException e) {
+				assertTrue(e.getMessage().contains("no free port"));
+			}
+		}
+		try (Reservation reservation = second.reserve()) {
+			assertEquals(port, reservation.port());
+		}
+	}
+
+	@Test
+	public void portInUseIsSkipped() throws Exception {
+		int port = freePort();
+		try (ServerSocket socket = new ServerSocket()) {
+			socket.bind(new InetSocketAddress(port));
+			assertFalse(PortAllocator.isBindable(port));
+			try {
+				new PortAllocator(temp.newFolder(), port, port).reserve();
+				fail("port is in use");
+			} catch (IOException e) {
+				assertTrue(e.getMessage().contains("no free port"));
+			}
+		}
+	}
+
+	@Test
+	public void failedReservationReleasesThePort() throws Exception {
+		File lockDir = temp.newFolder();
+		int port = freePort();
+		PortAllocator allocator = new PortAllocator(lockDir, port, port);
+		// a directory in place of the lock file makes opening it fail
+		File lockFile = new File(lockDir, "port-" + port + ".lock");
+		assertTrue(lockFile.mkdir());
+		try {
+			allocator.reserve();
+			fail("lock file can not be opened");
+		} catch (IOException e) {
+			// expected
+		}
+		assertTrue(lockFile.delete());
+		try (Reservation reservation = allocator.reserve()) {
+			assertEquals(port, reservation.port());
+		}
+	}
+
+	@Test
+	public void parallelReservationsGetDifferentPorts() throws Exception {
+		PortAllocator allocator = new PortAllocator(temp.newFolder(), PortAllocator.DEFAULT_FIRST_PORT,
+				PortAllocator.DEFAULT_LAST_PORT);
+		try (Reservation first = allocator.reserve(); Reservation second = allocator.reserve()) {
+			assertNotEquals(first.port(), second.port());
+		}
+	}
+
+	@Test
+	public void forksGetDisjointRanges() throws Exception {
+		try (Reservation first = PortAllocator.forFork(1).reserve(); Reservation second = PortAllocator.forFork(2).reserve()) {
+			assertTrue(first.port() >= PortAllocator.DEFAULT_FIRST_PORT);
+			assertTrue(first.port() < PortAllocator.DEFAULT_FIRST_PORT + PortAllocator.DEFAULT_PORTS_PER_FORK);
+			assertTrue(second.port() >= PortAllocator.DEFAULT_FIRST_PORT + PortAllocator.DEFAULT_PORTS_PER_FORK);
+			assertTrue(second.port() < PortAllocator.DEFAULT_FIRST_PORT + 2 * PortAllocator.DEFAULT_PORTS_PER_FORK);
+		}
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
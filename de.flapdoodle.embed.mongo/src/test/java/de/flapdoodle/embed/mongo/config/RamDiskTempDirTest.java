@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.config;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.flapdoodle.embed.process.io.directories.FixedPath;
+
+public class RamDiskTempDirTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void usesRamDiskIfThereIsEnoughSpace() throws Exception {
+		File ramDisk = temp.newFolder("ramdisk");
+		File fallback = temp.newFolder("fallback");
+
+		assertEquals(ramDisk, new RamDiskTempDir(ramDisk, 0, new FixedPath(fallback.getAbsolutePath())).asFile());
+	}
+
+	@Test
+	public void fallsBackIfRamDiskIsMissingOrTooSmall() throws Exception {
+		File fallback = temp.newFolder("fallback");
+
+		assertEquals(fallback.getAbsolutePath(),
+				new RamDiskTempDir(new File(temp.getRoot(), "missing"), 0, new FixedPath(fallback.getAbsolutePath())).asFile().getAbsolutePath());
+		assertEquals(fallback.getAbsolutePath(),
+				new RamDiskTempDir(temp.getRoot(), Long.MAX_VALUE, new FixedPath(fallback.getAbsolutePath())).asFile().getAbsolutePath());
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.config.processlistener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.flapdoodle.embed.mongo.config.processlistener.DbFiles.CopyStrategy;
+
+public class DbFilesTest {
+
+	private static final String[] FILES = { "WiredTiger", "collection-0.wt", "journal/WiredTigerLog.0000000001" };
+
+	@Rule
+	public TemporaryFolder tempDir = new TemporaryFolder();
+
+	@Test
+	public void copyKeepsContentAndModificationTime() throws IOException {
+		File template = newTemplate();
+		File dbDir = tempDir.newFolder("db");
+
+		DbFiles.copy(template, dbDir);
+
+		assertSameContent(template, dbDir);
+		assertEquals(FileTime.fromMillis(1000000000000L), Files.getLastModifiedTime(new File(dbDir, "collection-0.wt").toPath()));
+	}
+
+	@Test
+	public void materializedTemplateHasSameContent() throws IOException {
+		File template = newTemplate();
+		File dbDir = tempDir.newFolder("db");
+
+		CopyStrategy strategy = DbFiles.cloneLinkOrCopy(template, dbDir, DbFiles.DEFAULT_IMMUTABLE_FILES);
+
+		assertSameContent(template, dbDir);
+		if (strategy == CopyStrategy.REFLINK) {
+			assertNoFileShared(template, dbDir);
+			assertEquals(FileTime.fromMillis(1000000000000L), Files.getLastModifiedTime(new File(dbDir, "collection-0.wt").toPath()));
+		} else {
+			assertEquals(CopyStrategy.COPY, strategy);
+		}
+	}
+
+	@Test
+	public void reflinkKeepsContentAndModificationTime() throws IOException {
+		File template = newTemplate();
+		File dbDir = tempDir.newFolder("db");
+
+		assumeTrue("filesystem supports reflinks", DbFiles.reflink(template, dbDir));
+
+		assertSameContent(template, dbDir);
+		assertNoFileShared(template, dbDir);
+		assertEquals(FileTime.fromMillis(1000000000000L), Files.getLastModifiedTime(new File(dbDir, "collection-0.wt").toPath()));
+	}
+
+	@Test
+	public void immutableFilesAreLinkedAndAllOthersCopied() throws IOException {
+		File template = newTemplate();
+		File dbDir = tempDir.newFolder("db");
+
+		CopyStrategy strategy = DbFiles.linkOrCopy(template, dbDir, DbFiles.DEFAULT_IMMUTABLE_FILES);
+
+		assertEquals(CopyStrategy.COPY, strategy);
+		assertSameContent(template, dbDir);
+		assertTrue(isSameFile(template, dbDir, "WiredTiger"));
+		assertFalse(isSameFile(template, dbDir, "collection-0.wt"));
+		assertFalse(isSameFile(template, dbDir, "journal/WiredTigerLog.0000000001"));
+		assertEquals(FileTime.fromMillis(1000000000000L), Files.getLastModifiedTime(new File(dbDir, "collection-0.wt").toPath()));
+	}
+
+	@Test
+	public void allFilesAreLinked() throws IOException {
+		File template = newTemplate();
+		File dbDir = tempDir.newFolder("db");
+
+		CopyStrategy strategy = DbFiles.linkOrCopy(template, dbDir, DbFiles.ALL_FILES);
+
+		assertEquals(CopyStrategy.HARDLINK, strategy);
+		for (String name : FILES) {
+			assertTrue(name, isSameFile(template, dbDir, name));
+		}
+	}
+
+	@Test
+	public void copyCopiesEveryFile() throws IOException {
+		File template = newTemplate();
+		File dbDir = tempDir.newFolder("db");
+
+		DbFiles.copy(template, dbDir);
+
+		assertSameContent(template, dbDir);
+		assertNoFileShared(template, dbDir);
+	}
+
+	@Test
+	public void listenerReportsStrategy() throws IOException {
+		File template = newTemplate();
+		File dbDir = tempDir.newFolder("db");
+
+		MaterializeDbTemplateBeforeProcessStart listener = new MaterializeDbTemplateBeforeProcessStart(template);
+		listener.onBeforeProcessStart(dbDir, true);
+
+		assertTrue(listener.lastStrategy() == CopyStrategy.REFLINK || listener.lastStrategy() == CopyStrategy.COPY);
+		assertSameContent(template, dbDir);
+	}
+
+	private File newTemplate() throws IOException {
+		File template = tempDir.newFolder("template");
+		write(new File(template, "WiredTiger"), "WiredTiger\nWiredTiger 2.9.2: (December 23, 2016)\n");
+		write(new File(template, "collection-0.wt"), "collection");
+		write(new File(new File(template, "journal"), "WiredTigerLog.0000000001"), "journal");
+		Files.setLastModifiedTime(new File(template, "collection-0.wt").toPath(), FileTime.fromMillis(1000000000000L));
+		return template;
+	}
+
+	private static void assertSameContent(File template, File dbDir) throws IOException {
+		for (String name : FILES) {
+			assertEquals(name, read(new File(template, name)), read(new File(dbDir, name)));
+		}
+	}
+
+	private static void assertNoFileShared(File template, File dbDir) throws IOException {
+		for (String name : FILES) {
+			assertFalse(name, isSameFile(template, dbDir, name));
+		}
+	}
+
+	private static boolean isSameFile(File template, File dbDir, String name) throws IOException {
+		return Files.isSameFile(new File(template, name).toPath(), new File(dbDir, name).toPath());
+	}
+
+	private static void write(File file, String content) throws IOException {
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
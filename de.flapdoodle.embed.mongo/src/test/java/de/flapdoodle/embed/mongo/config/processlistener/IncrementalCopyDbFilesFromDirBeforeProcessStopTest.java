@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.config.processlistener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IncrementalCopyDbFilesFromDirBeforeProcessStopTest {
+
+	@Rule
+	public TemporaryFolder tempDir = new TemporaryFolder();
+
+	@Test
+	public void onlyChangedFilesAreCopied() throws IOException {
+		File dbDir = tempDir.newFolder("db");
+		File destination = new File(tempDir.getRoot(), "snapshot");
+		write(new File(dbDir, "collection-0.wt"), "first", 1000000000000L);
+		write(new File(dbDir, "collection-1.wt"), "second", 1000000000000L);
+
+		IncrementalCopyDbFilesFromDirBeforeProcessStop listener = new IncrementalCopyDbFilesFromDirBeforeProcessStop(destination);
+		listener.onAfterProcessStop(dbDir, false);
+
+		assertEquals("first", read(new File(destination, "collection-0.wt")));
+		assertEquals("second", read(new File(destination, "collection-1.wt")));
+		assertTrue(IncrementalCopyDbFilesFromDirBeforeProcessStop.manifestOf(destination).exists());
+
+		// marker to see if an unchanged file is copied again
+		write(new File(destination, "collection-0.wt"), "untouched", 1000000000000L);
+		write(new File(dbDir, "collection-1.wt"), "changed", 1000000001000L);
+
+		listener.onAfterProcessStop(dbDir, false);
+
+		assertEquals("untouched", read(new File(destination, "collection-0.wt")));
+		assertEquals("changed", read(new File(destination, "collection-1.wt")));
+	}
+
+	@Test
+	public void removedFilesAreDeleted() throws IOException {
+		File dbDir = tempDir.newFolder("db");
+		File destination = new File(tempDir.getRoot(), "snapshot");
+		write(new File(dbDir, "collection-0.wt"), "first", 1000000000000L);
+		write(new File(dbDir, "collection-1.wt"), "second", 1000000000000L);
+
+		IncrementalCopyDbFilesFromDirBeforeProcessStop listener = new IncrementalCopyDbFilesFromDirBeforeProcessStop(destination);
+		listener.onAfterProcessStop(dbDir, false);
+		Files.delete(new File(dbDir, "collection-1.wt").toPath());
+		listener.onAfterProcessStop(dbDir, false);
+
+		assertTrue(new File(destination, "collection-0.wt").exists());
+		assertFalse(new File(destination, "collection-1.wt").exists());
+	}
+
+	@Test
+	public void contentHashDetectsChangeWithSameSizeAndTime() throws IOException {
+		File dbDir = tempDir.newFolder("db");
+		File destination = new File(tempDir.getRoot(), "snapshot");
+		write(new File(dbDir, "collection-0.wt"), "aaaa", 1000000000000L);
+
+		IncrementalCopyDbFilesFromDirBeforeProcessStop listener = new IncrementalCopyDbFilesFromDirBeforeProcessStop(destination, true);
+		listener.onAfterProcessStop(dbDir, false);
+		write(new File(dbDir, "collection-0.wt"), "bbbb", 1000000000000L);
+		listener.onAfterProcessStop(dbDir, false);
+
+		assertEquals("bbbb", read(new File(destination, "collection-0.wt")));
+	}
+
+	private static void write(File file, String content, long lastModified) throws IOException {
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(lastModified));
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
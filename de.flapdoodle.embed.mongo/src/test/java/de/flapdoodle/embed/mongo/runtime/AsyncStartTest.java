@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import de.flapdoodle.embed.process.runtime.IStopable;
+
+public class AsyncStartTest {
+
+	@Test
+	public void startsRunConcurrently() throws Exception {
+		final CountDownLatch bothStarted = new CountDownLatch(2);
+		CompletableFuture<String> first = AsyncStart.start(() -> awaitOther(bothStarted));
+		CompletableFuture<String> second = AsyncStart.start(() -> awaitOther(bothStarted));
+
+		assertNotEquals(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void failedStartCompletesExceptionally() throws Exception {
+		final IOException failure = new IOException("could not start");
+		CompletableFuture<String> future = AsyncStart.start(() -> {
+			throw failure;
+		});
+
+		try {
+			future.get(5, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			assertSame(failure, e.getCause());
+		}
+		assertTrue(future.isCompletedExceptionally());
+	}
+
+	@Test
+	public void usesGivenExecutor() throws Exception {
+		CompletableFuture<String> future = AsyncStart.start(() -> Thread.currentThread().getName(), Runnable::run);
+		assertEquals(Thread.currentThread().getName(), future.get());
+	}
+
+	@Test
+	public void processReadyAfterCancelIsStopped() throws Exception {
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		final IStopable process = mock(IStopable.class);
+		CompletableFuture<IStopable> future = AsyncStart.startProcess(() -> {
+			cancelled.await(5, TimeUnit.SECONDS);
+			return process;
+		});
+
+		assertTrue(future.cancel(true));
+		cancelled.countDown();
+
+		verify(process, timeout(5000)).stop();
+	}
+
+	@Test
+	public void startCancelledBeforeItRunsIsSkipped() throws Exception {
+		final List<Runnable> queued = new ArrayList<>();
+		final AtomicBoolean started = new AtomicBoolean();
+		CompletableFuture<String> future = AsyncStart.start(() -> {
+			started.set(true);
+			return "started";
+		}, queued::add);
+
+		future.cancel(true);
+		queued.get(0).run();
+
+		assertFalse(started.get());
+	}
+
+	@Test
+	public void failedStartStopsPreparedExecutable() throws Exception {
+		final IOException failure = new IOException("could not start");
+		final List<String> stopped = new CopyOnWriteArrayList<>();
+		CompletableFuture<String> future = AsyncStart.prepareAndStart(() -> "executable", executable -> {
+			throw failure;
+		}, stopped::add);
+
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("start failed");
+		} catch (ExecutionException e) {
+			assertSame(failure, e.getCause());
+		}
+		assertEquals(Arrays.asList("executable"), stopped);
+	}
+
+	@Test
+	public void startReadyAfterCancelStopsPreparedExecutable() throws Exception {
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		final List<String> stopped = new CopyOnWriteArrayList<>();
+		CompletableFuture<String> future = AsyncStart.prepareAndStart(() -> "executable", executable -> {
+			try {
+				cancelled.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "process of " + executable;
+		}, stopped::add);
+
+		assertTrue(future.cancel(true));
+		cancelled.countDown();
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (stopped.isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(Arrays.asList("executable"), stopped);
+	}
+
+	private static String awaitOther(CountDownLatch bothStarted) throws InterruptedException {
+		bothStarted.countDown();
+		if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+			throw new IllegalStateException("starts did not overlap");
+		}
+		return Thread.currentThread().getName();
+	}
+}
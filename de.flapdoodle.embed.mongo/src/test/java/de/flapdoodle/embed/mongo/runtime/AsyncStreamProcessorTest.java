@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import de.flapdoodle.embed.mongo.runtime.AsyncStreamProcessor.OverflowPolicy;
+import de.flapdoodle.embed.process.io.IStreamProcessor;
+
+public class AsyncStreamProcessorTest {
+
+	private static final Pattern DROPPED = Pattern.compile("\\[(\\d+) lines dropped, output was too slow\\]\n");
+
+	@Test
+	public void slowDestinationDoesNotBlockWithDropPolicy() throws Exception {
+		CollectingProcessor destination = new CollectingProcessor();
+		destination.blocked = new CountDownLatch(1);
+		AsyncStreamProcessor processor = new AsyncStreamProcessor(destination, 4, 2, OverflowPolicy.DROP);
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 100; i++) {
+			processor.process("line " + i + "\n");
+		}
+		assertTrue(System.currentTimeMillis() - start < 1000);
+		assertTrue(processor.droppedLines() > 0);
+
+		destination.blocked.countDown();
+		processor.onProcessed();
+		assertTrue(destination.processed.await(5, TimeUnit.SECONDS));
+
+		long delivered = 0;
+		long reportedDropped = 0;
+		for (String line : destination.lines()) {
+			Matcher matcher = DROPPED.matcher(line);
+			if (matcher.matches()) {
+				reportedDropped += Long.parseLong(matcher.group(1));
+			} else {
+				delivered++;
+			}
+		}
+		assertEquals(processor.droppedLines(), reportedDropped);
+		assertEquals(100 - processor.droppedLines(), delivered);
+	}
+
+	@Test
+	public void blockPolicyKeepsAllLinesInOrder() throws Exception {
+		CollectingProcessor destination = new CollectingProcessor();
+		AsyncStreamProcessor processor = new AsyncStreamProcessor(destination, 4, 3, OverflowPolicy.BLOCK);
+
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			expected.add("line " + i + "\n");
+			processor.process("line " + i + "\n");
+		}
+		processor.onProcessed();
+
+		assertTrue(destination.processed.await(5, TimeUnit.SECONDS));
+		assertEquals(expected, destination.lines());
+		assertEquals(0, processor.droppedLines());
+	}
+
+	static class CollectingProcessor implements IStreamProcessor {
+
+		private final List<String> lines = new ArrayList<>();
+		final CountDownLatch processed = new CountDownLatch(1);
+		volatile CountDownLatch blocked = null;
+
+		@Override
+		public void process(String block) {
+			if (blocked != null) {
+				try {
+					blocked.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			synchronized (lines) {
+				lines.add(block);
+			}
+		}
+
+		@Override
+		public void onProcessed() {
+			processed.countDown();
+		}
+
+		List<String> lines() {
+			synchronized (lines) {
+				return new ArrayList<>(lines);
+			}
+		}
+	}
+}
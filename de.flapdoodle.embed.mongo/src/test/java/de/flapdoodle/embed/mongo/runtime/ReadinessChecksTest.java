@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.process.io.Processors;
+
+public class ReadinessChecksTest {
+
+	@Test
+	public void logWatchFindsSuccessAndDiscardsOutput() {
+		StartupLogWatch logWatch = newLogWatch();
+		logWatch.process("MongoDB starting : pid=4711 port=27017\n");
+		logWatch.process("waiting for connections on port 27017\n");
+
+		assertTrue(ReadinessChecks.logMessage().waitForReadiness(new Net(27017, false), logWatch, 1000));
+		assertEquals(4711, Mongod.getMongodProcessId(logWatch.getOutput(), -1));
+
+		logWatch.discardOutput();
+		logWatch.process("some more output\n");
+		assertEquals("", logWatch.getOutput());
+	}
+
+	@Test
+	public void logWatchStopsWaitingOnFailure() {
+		StartupLogWatch logWatch = newLogWatch();
+		logWatch.process("ERROR: dbpath does not exist\n");
+
+		long start = System.currentTimeMillis();
+		assertFalse(ReadinessChecks.logMessage().waitForReadiness(new Net(27017, false), logWatch, 10000));
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertEquals("ERROR: dbpath does not exist\n", logWatch.getFailureFound());
+	}
+
+	@Test
+	public void logWatchStopsWaitingIfOutputEnds() {
+		StartupLogWatch logWatch = newLogWatch();
+		logWatch.onProcessed();
+
+		assertFalse(ReadinessChecks.logMessage().waitForReadiness(new Net(27017, false), logWatch, 10000));
+		assertTrue(logWatch.isFinished());
+	}
+
+	@Test
+	public void wireProtocolIsReadyIfServerAnswersIsMaster() throws Exception {
+		AtomicReference<byte[]> received = new AtomicReference<>();
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			Thread fakeMongod = answerWithReplyHeader(server, received);
+
+			Net net = new Net(InetAddress.getLoopbackAddress().getHostAddress(), server.getLocalPort(), false);
+			assertTrue(ReadinessChecks.wireProtocol().waitForReadiness(net, newLogWatch(), 5000));
+
+			fakeMongod.join(5000);
+			assertArrayEquals(Mongod.IS_MASTER_COMMAND, received.get());
+		}
+	}
+
+	@Test
+	public void wireProtocolGivesUpAfterTimeout() throws Exception {
+		int port;
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			port = server.getLocalPort();
+		}
+		Net net = new Net(InetAddress.getLoopbackAddress().getHostAddress(), port, false);
+		assertFalse(ReadinessChecks.wireProtocol().waitForReadiness(net, newLogWatch(), 200));
+	}
+
+	private static StartupLogWatch newLogWatch() {
+		return new StartupLogWatch("waiting for connections on port", Collections.singleton("ERROR:"), Processors.silent());
+	}
+
+	private static Thread answerWithReplyHeader(final ServerSocket server, final AtomicReference<byte[]> received) {
+		Thread thread = new Thread(() -> {
+			try (Socket client = server.accept()) {
+				InputStream in = client.getInputStream();
+				byte[] request = new byte[Mongod.IS_MASTER_COMMAND.length];
+				int read = 0;
+				while (read < request.length) {
+					read += in.read(request, read, request.length - read);
+				}
+				received.set(request);
+
+				OutputStream out = client.getOutputStream();
+				// messageLength, requestID, responseTo, opCode=OP_REPLY
+				out.write(new byte[] { 16, 0, 0, 0, 2, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0 });
+				out.flush();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		thread.start();
+		return thread;
+	}
+}
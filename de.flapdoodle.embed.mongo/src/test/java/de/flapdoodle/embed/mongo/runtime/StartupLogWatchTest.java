@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import de.flapdoodle.embed.process.io.Processors;
+
+public class StartupLogWatchTest {
+
+	@Test
+	public void keepsOnlyTheLatestOutput() {
+		StartupLogWatch logWatch = newLogWatch(100);
+		for (int i = 0; i < 1000; i++) {
+			logWatch.process(String.format("line %08d\n", i));
+		}
+
+		String output = logWatch.getOutput();
+		assertTrue(logWatch.isOutputTruncated());
+		assertTrue(output.length() <= 100);
+		assertTrue(output.endsWith("line 00000999\n"));
+		assertFalse(output.contains("line 00000000"));
+	}
+
+	@Test
+	public void keepsOneLineEvenIfItIsTooLong() {
+		StartupLogWatch logWatch = newLogWatch(10);
+		logWatch.process("a line longer than the limit\n");
+
+		assertEquals("a line longer than the limit\n", logWatch.getOutput());
+	}
+
+	@Test
+	public void findsProcessIdAndMarkersAfterOutputWasDropped() {
+		StartupLogWatch logWatch = newLogWatch(64);
+		logWatch.process("MongoDB starting : pid=4711 port=27017\n");
+		for (int i = 0; i < 100; i++) {
+			logWatch.process("verbose output\n");
+		}
+		logWatch.process("waiting for connections on port 27017\n");
+
+		assertFalse(logWatch.getOutput().contains("pid="));
+		assertEquals(4711, logWatch.getProcessId(-1));
+		assertTrue(logWatch.isInitWithSuccess());
+	}
+
+	@Test
+	public void processIdDefaultsIfNotFound() {
+		StartupLogWatch logWatch = newLogWatch(64);
+		logWatch.process("waiting for connections on port 27017\n");
+
+		assertEquals(-1, logWatch.getProcessId(-1));
+	}
+
+	private static StartupLogWatch newLogWatch(int maxOutputSize) {
+		return new StartupLogWatch("waiting for connections on port", Collections.singleton("ERROR:"),
+				Mongod.PROCESS_ID_PATTERN, maxOutputSize, Processors.silent());
+	}
+}
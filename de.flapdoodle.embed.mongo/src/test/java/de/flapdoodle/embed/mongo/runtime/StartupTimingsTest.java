@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import de.flapdoodle.embed.mongo.runtime.StartupTimings.Phase;
+
+public class StartupTimingsTest {
+
+	@Test
+	public void recorderMeasuresConsecutivePhases() throws Exception {
+		StartupTimings.Recorder recorder = new StartupTimings.Recorder("MongodProcess");
+		Thread.sleep(20);
+		recorder.done(Phase.DB_DIR);
+		recorder.done(Phase.SPAWN);
+		Thread.sleep(20);
+		recorder.done(Phase.READINESS);
+
+		StartupTimings timings = recorder.build(true);
+		assertEquals("MongodProcess", timings.name());
+		assertTrue(timings.durations().get(Phase.DB_DIR) >= 20);
+		assertTrue(timings.durations().get(Phase.SPAWN) < 20);
+		assertTrue(timings.durations().get(Phase.READINESS) >= 20);
+		assertFalse(timings.durations().containsKey(Phase.ARTIFACT));
+		assertEquals(timings.durations().get(Phase.DB_DIR) + timings.durations().get(Phase.SPAWN)
+				+ timings.durations().get(Phase.READINESS), timings.total());
+	}
+
+	@Test
+	public void listenersGetPublishedTimings() {
+		List<StartupTimings> received = new ArrayList<>();
+		IStartupTimingListener listener = received::add;
+		StartupTimings.addListener(listener);
+		try {
+			StartupTimings.publish(timings(1, 2, true));
+		} finally {
+			StartupTimings.removeListener(listener);
+		}
+		StartupTimings.publish(timings(1, 2, true));
+
+		assertEquals(1, received.size());
+		assertEquals(3, received.get(0).total());
+	}
+
+	@Test
+	public void jmxAggregatesStarts() throws Exception {
+		StartupTimingsJmx jmx = StartupTimingsJmx.register();
+		try {
+			for (int i = 1; i <= 100; i++) {
+				jmx.onStartupTimings(timings(i, 10, i != 100));
+			}
+			jmx.onStartupTimings(artifact(500));
+
+			assertEquals(100, jmx.getStarts());
+			assertEquals(1, jmx.getFailedStarts());
+			assertEquals(Long.valueOf(50), jmx.getP50InMs().get(Phase.DB_DIR.name()));
+			assertEquals(Long.valueOf(105), jmx.getP95InMs().get(StartupTimingsJmx.TOTAL));
+			assertEquals(Long.valueOf(100), jmx.getMaxInMs().get(Phase.DB_DIR.name()));
+			assertEquals(Long.valueOf(500), jmx.getLastInMs().get(Phase.ARTIFACT.name()));
+
+			ObjectName name = new ObjectName(StartupTimingsJmx.OBJECT_NAME);
+			assertEquals(100L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Starts"));
+
+			jmx.reset();
+			assertEquals(0, jmx.getStarts());
+			assertTrue(jmx.getP99InMs().isEmpty());
+		} finally {
+			StartupTimingsJmx.unregister(jmx);
+		}
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(StartupTimingsJmx.OBJECT_NAME)));
+	}
+
+	private static StartupTimings timings(long dbDir, long readiness, boolean ready) {
+		Map<Phase, Long> durations = new EnumMap<>(Phase.class);
+		durations.put(Phase.DB_DIR, dbDir);
+		durations.put(Phase.READINESS, readiness);
+		return new StartupTimings("MongodProcess", durations, ready);
+	}
+
+	private static StartupTimings artifact(long duration) {
+		Map<Phase, Long> durations = new EnumMap<>(Phase.class);
+		durations.put(Phase.ARTIFACT, duration);
+		return new StartupTimings("MongodStarter", durations, true);
+	}
+}
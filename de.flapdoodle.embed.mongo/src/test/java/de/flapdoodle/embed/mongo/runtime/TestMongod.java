@@ -20,6 +20,17 @@
  */
 package de.flapdoodle.embed.mongo.runtime;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.flapdoodle.embed.mongo.config.IMongodConfig;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.config.store.FileType;
+import de.flapdoodle.embed.process.extract.IExtractedFileSet;
+import de.flapdoodle.embed.process.extract.ImmutableExtractedFileSet;
 import junit.framework.TestCase;
 
 //CHECKSTYLE:OFF
@@ -35,4 +46,30 @@ public class TestMongod extends TestCase {
 
 		assertEquals("PID", 11026, Mongod.getMongodProcessId(consoleOutput, -1));
 	}
+
+	public void testUnixSocketPrefixOnCommandLine() throws Exception {
+		File socketDir = new File("/tmp/embedmongo-sockets");
+		IMongodConfig config = new MongodConfigBuilder()
+				.version(Version.Main.PRODUCTION)
+				.net(Net.unixSocket(socketDir, 27017))
+				.build();
+		File baseDir = new File("/tmp/embedmongo-extracted");
+		IExtractedFileSet files = ImmutableExtractedFileSet.builder(baseDir)
+				.file(FileType.Executable, new File(baseDir, "mongod"))
+				.build();
+
+		List<String> commandLine = Mongod.getCommandLine(config, files, new File("/tmp/embedmongo-db"));
+
+		int prefix = commandLine.indexOf("--unixSocketPrefix");
+		assertTrue("--unixSocketPrefix missing in " + commandLine, prefix != -1);
+		assertEquals(socketDir.getAbsolutePath(), commandLine.get(prefix + 1));
+		assertEquals("127.0.0.1", commandLine.get(commandLine.indexOf("--bind_ip") + 1));
+	}
+
+	public void testNoUnixSocketPrefixForTcp() throws Exception {
+		List<String> args = new ArrayList<>();
+		AbstractMongo.applyNet(new Net(27017, false), args);
+
+		assertFalse(args.contains("--unixSocketPrefix"));
+	}
 }
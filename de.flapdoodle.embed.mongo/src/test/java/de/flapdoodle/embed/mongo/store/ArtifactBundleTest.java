@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.flapdoodle.embed.mongo.Command;
+import de.flapdoodle.embed.mongo.Paths;
+import de.flapdoodle.embed.process.distribution.BitSize;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.distribution.GenericVersion;
+import de.flapdoodle.embed.process.distribution.Platform;
+import de.flapdoodle.embed.process.extract.IExtractedFileSet;
+import de.flapdoodle.embed.process.extract.UUIDTempNaming;
+import de.flapdoodle.embed.process.io.directories.FixedPath;
+
+public class ArtifactBundleTest {
+
+	private static final String ARCHIVE = "linux/mongodb-linux-x86_64-3.4.2.tgz";
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void writtenFilesCanBeReadBack() throws Exception {
+		File mongod = file("mongod", 5000);
+		File mongos = file("mongos", 17);
+		File bundleFile = new File(temp.getRoot(), "mongo.bundle");
+
+		new ArtifactBundleWriter()
+				.add(ARCHIVE, "mongod", mongod)
+				.add(ARCHIVE, "mongos", mongos)
+				.writeTo(bundleFile);
+
+		try (ArtifactBundle bundle = ArtifactBundle.open(bundleFile)) {
+			assertEquals(new HashSet<>(Arrays.asList(ARCHIVE + "!mongod", ARCHIVE + "!mongos")), bundle.keys());
+			assertFalse(bundle.contains(ARCHIVE + "!mongo"));
+
+			ByteBuffer content = bundle.content(ArtifactBundle.keyOf(ARCHIVE, "mongos"));
+			byte[] bytes = new byte[content.remaining()];
+			content.get(bytes);
+			assertArrayEquals(Files.readAllBytes(mongos.toPath()), bytes);
+
+			File copy = bundle.copyTo(ArtifactBundle.keyOf(ARCHIVE, "mongod"), new File(temp.getRoot(), "mongod-copy"));
+			assertArrayEquals(Files.readAllBytes(mongod.toPath()), Files.readAllBytes(copy.toPath()));
+			assertTrue(copy.canExecute());
+		}
+	}
+
+	@Test
+	public void bundleStoreKeepsNoFileOpen() throws Exception {
+		File fd = new File("/proc/self/fd");
+		assumeTrue(fd.isDirectory());
+		Distribution distribution = new Distribution(new GenericVersion("3.4.2"), Platform.Linux, BitSize.B64);
+		Paths paths = new Paths(Command.MongoD);
+		File bundleFile = new File(temp.getRoot(), "mongo.bundle");
+		new ArtifactBundleWriter()
+				.add(paths.getPath(distribution), "mongod", file("mongod", 5000))
+				.writeTo(bundleFile);
+
+		BundleArtifactStore store = new BundleArtifactStore(bundleFile, paths,
+				new FixedPath(temp.newFolder().getAbsolutePath()), new UUIDTempNaming());
+		assertTrue(store.checkDistribution(distribution));
+		IExtractedFileSet files = store.extractFileSet(distribution);
+		assertTrue(files.executable().canExecute());
+		store.removeFileSet(distribution, files);
+
+		for (File open : fd.listFiles()) {
+			assertFalse(bundleFile.getCanonicalPath().equals(open.getCanonicalPath()));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void otherFilesAreRejected() throws Exception {
+		ArtifactBundle.open(file("something", 100)).close();
+	}
+
+	private File file(String name, int size) throws Exception {
+		byte[] content = new byte[size];
+		Arrays.fill(content, name.getBytes(StandardCharsets.US_ASCII)[name.length() - 1]);
+		File ret = new File(temp.getRoot(), name);
+		Files.write(ret.toPath(), content);
+		return ret;
+	}
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArtifactCacheTest {
+
+	private static final int ARCHIVE_SIZE = 1000;
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void archivesAreStoredByContentHash() throws Exception {
+		ArtifactCache cache = new ArtifactCache(temp.newFolder("cache"));
+		File archive = cache.store("linux/mongodb-linux-x86_64-3.4.2.tgz", download((byte) 1));
+		File sameContent = cache.store("linux/mongodb-linux-x86_64-3.4.2-copy.tgz", download((byte) 1));
+
+		assertEquals(archive, sameContent);
+		assertEquals(archive, cache.archive("linux/mongodb-linux-x86_64-3.4.2.tgz"));
+		assertNull(cache.archive("linux/unknown.tgz"));
+		assertEquals(RangedDownloader.sha256(archive) + ArtifactCache.ARCHIVE_SUFFIX, archive.getName());
+
+		List<ArtifactCache.Entry> entries = cache.entries();
+		assertEquals(1, entries.size());
+		assertEquals(2, entries.get(0).paths().size());
+	}
+
+	@Test
+	public void leastRecentlyUsedArchivesAreEvicted() throws Exception {
+		File root = temp.newFolder("cache");
+		ArtifactCache cache = new ArtifactCache(root, 2 * ARCHIVE_SIZE);
+		File first = cache.store("first.tgz", download((byte) 1));
+		File second = cache.store("second.tgz", download((byte) 2));
+		lastUsed(root, first, 1000);
+		lastUsed(root, second, 2000);
+		// first was used after second
+		assertNotNull(cache.archive("first.tgz"));
+
+		cache.store("third.tgz", download((byte) 3));
+
+		assertNotNull(cache.archive("first.tgz"));
+		assertNull(cache.archive("second.tgz"));
+		assertNotNull(cache.archive("third.tgz"));
+		assertFalse(second.exists());
+		assertEquals(2 * ARCHIVE_SIZE, cache.size());
+	}
+
+	@Test
+	public void pruneEvictsExtractedFilesToo() throws Exception {
+		ArtifactCache cache = new ArtifactCache(temp.newFolder("cache"));
+		cache.store("first.tgz", download((byte) 1));
+		File extracted = cache.extractDir("first.tgz");
+		assertTrue(extracted.mkdirs());
+		Files.write(new File(extracted, "mongod").toPath(), new byte[ARCHIVE_SIZE]);
+		assertEquals(2 * ARCHIVE_SIZE, cache.size());
+
+		List<ArtifactCache.Entry> evicted = cache.prune(0);
+
+		assertEquals(Arrays.asList("first.tgz"), evicted.get(0).paths());
+		assertFalse(extracted.exists());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void useFetchesEvictedArchiveAgain() throws Exception {
+		ArtifactCache cache = new ArtifactCache(temp.newFolder("cache"));
+		cache.store("first.tgz", download((byte) 1));
+		cache.prune(0);
+		assertNull(cache.archive("first.tgz"));
+
+		AtomicInteger fetches = new AtomicInteger();
+		File archive = cache.use("first.tgz", () -> {
+			fetches.incrementAndGet();
+			return download((byte) 1);
+		}, (cached, extractDir) -> cached);
+
+		assertEquals(1, fetches.get());
+		assertTrue(archive.isFile());
+	}
+
+	@Test
+	public void pinnedExtractDirIsNotEvicted() throws Exception {
+		ArtifactCache cache = new ArtifactCache(temp.newFolder("cache"));
+		cache.store("first.tgz", download((byte) 1));
+		File[] extracted = new File[1];
+		ArtifactCache.Pin pin = cache.use("first.tgz", () -> {
+			throw new AssertionError("is cached");
+		}, (archive, extractDir) -> {
+			assertTrue(extractDir.mkdirs());
+			extracted[0] = extractDir;
+			return cache.pin(extractDir);
+		});
+
+		assertTrue(cache.prune(0).isEmpty());
+		assertTrue(extracted[0].isDirectory());
+
+		pin.close();
+		assertEquals(1, cache.prune(0).size());
+		assertFalse(extracted[0].exists());
+	}
+
+	@Test
+	public void stalePinOfDeadJvmIsIgnored() throws Exception {
+		File root = temp.newFolder("cache");
+		ArtifactCache cache = new ArtifactCache(root);
+		File archive = cache.store("first.tgz", download((byte) 1));
+		String hash = archive.getName().substring(0, archive.getName().length() - ArtifactCache.ARCHIVE_SUFFIX.length());
+		File pins = new File(new File(root, ArtifactCache.OBJECTS_DIR), hash + ArtifactCache.PINS_SUFFIX);
+		assertTrue(pins.mkdirs());
+		// nobody holds a lock on it
+		assertTrue(new File(pins, "dead.pin").createNewFile());
+
+		assertEquals(1, cache.prune(0).size());
+		assertFalse(pins.exists());
+	}
+
+	@Test
+	public void parsesSizes() {
+		assertEquals(1024, ArtifactCache.parseSize("1024"));
+		assertEquals(512L * 1024 * 1024, ArtifactCache.parseSize("512M"));
+		assertEquals(2L * 1024 * 1024 * 1024, ArtifactCache.parseSize("2g"));
+	}
+
+	private File download(byte fill) throws IOException {
+		byte[] content = new byte[ARCHIVE_SIZE];
+		Arrays.fill(content, fill);
+		File ret = temp.newFile();
+		Files.write(ret.toPath(), content);
+		assertArrayEquals(content, Files.readAllBytes(ret.toPath()));
+		return ret;
+	}
+
+	private static void lastUsed(File root, File archive, long timestamp) {
+		String hash = archive.getName().substring(0, archive.getName().length() - ArtifactCache.ARCHIVE_SUFFIX.length());
+		assertTrue(new File(new File(root, ArtifactCache.OBJECTS_DIR), hash + ArtifactCache.USED_SUFFIX).setLastModified(timestamp));
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mortbay.jetty.Request;
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.handler.AbstractHandler;
+
+import de.flapdoodle.embed.process.config.store.DownloadPath;
+import de.flapdoodle.embed.process.config.store.HttpProxyFactory;
+import de.flapdoodle.embed.process.config.store.IDownloadConfig;
+import de.flapdoodle.embed.process.config.store.IPackageResolver;
+import de.flapdoodle.embed.process.config.store.ITimeoutConfig;
+import de.flapdoodle.embed.process.distribution.BitSize;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.distribution.GenericVersion;
+import de.flapdoodle.embed.process.distribution.Platform;
+import de.flapdoodle.embed.process.io.directories.FixedPath;
+import de.flapdoodle.embed.process.io.progress.IProgressListener;
+
+public class RangedDownloaderTest {
+
+	private static final String ARCHIVE = "mongodb-test.tgz";
+	private static final int CHUNK_SIZE = 64 * 1024;
+	private static final int CHUNKS = 10;
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private final byte[] content = new byte[CHUNKS * CHUNK_SIZE - 17];
+	private final RangeHandler handler = new RangeHandler();
+	private final Distribution distribution = new Distribution(new GenericVersion("3.4.2"), Platform.Linux, BitSize.B64);
+	private Server server;
+	private int port;
+	private IDownloadConfig config;
+
+	@Before
+	public void setUp() throws Exception {
+		new Random(4711).nextBytes(content);
+		handler.checksum = sha256(content);
+
+		server = new Server(0);
+		server.setHandler(handler);
+		server.start();
+		port = server.getConnectors()[0].getLocalPort();
+
+		IPackageResolver packageResolver = mock(IPackageResolver.class);
+		when(packageResolver.getPath(distribution)).thenReturn(ARCHIVE);
+		config = mock(IDownloadConfig.class);
+		when(config.getDownloadPath()).thenReturn(new DownloadPath("http://localhost:" + port + "/"));
+		when(config.getPackageResolver()).thenReturn(packageResolver);
+		when(config.getArtifactStorePath()).thenReturn(new FixedPath(temp.getRoot().getAbsolutePath()));
+		when(config.getProgressListener()).thenReturn(mock(IProgressListener.class));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+	}
+
+	@Test
+	public void downloadsChunksInParallelAndVerifiesChecksum() throws Exception {
+		File file = new RangedDownloader(4, CHUNK_SIZE).download(config, distribution);
+
+		assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+		assertEquals(CHUNKS, handler.ranges.size() - 1);
+		assertFalse(new File(temp.getRoot(), ARCHIVE + RangedDownloader.PART_SUFFIX).exists());
+		assertFalse(new File(temp.getRoot(), ARCHIVE + RangedDownloader.STATE_SUFFIX).exists());
+	}
+
+	@Test
+	public void resumesPartialDownload() throws Exception {
+		handler.failFrom = 5L * CHUNK_SIZE;
+		try {
+			new RangedDownloader(1, CHUNK_SIZE).download(config, distribution);
+			fail("should fail");
+		} catch (IOException e) {
+			assertTrue(new File(temp.getRoot(), ARCHIVE + RangedDownloader.STATE_SUFFIX).isFile());
+		}
+
+		handler.failFrom = -1;
+		handler.ranges.clear();
+		File file = new RangedDownloader(1, CHUNK_SIZE).download(config, distribution);
+
+		assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+		// probe and the chunks starting with the first failed one
+		assertEquals(1 + CHUNKS - 5, handler.ranges.size());
+	}
+
+	@Test
+	public void checksumMismatchDeletesDownload() throws Exception {
+		handler.checksum = "0000";
+		try {
+			new RangedDownloader(4, CHUNK_SIZE).download(config, distribution);
+			fail("should fail");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("checksum mismatch"));
+		}
+		assertFalse(new File(temp.getRoot(), ARCHIVE + RangedDownloader.PART_SUFFIX).exists());
+	}
+
+	@Test
+	public void fallsBackToOneStreamWithoutRangeSupport() throws Exception {
+		handler.supportsRanges = false;
+		File file = new RangedDownloader(4, CHUNK_SIZE).download(config, distribution);
+
+		assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+	}
+
+	@Test
+	public void downloadsThroughConfiguredProxy() throws Exception {
+		// the jetty server acts as proxy, the host itself does not resolve
+		when(config.getDownloadPath()).thenReturn(new DownloadPath("http://mongodb.invalid/"));
+		when(config.getProxyFactory()).thenReturn(new HttpProxyFactory("localhost", port));
+
+		File file = new RangedDownloader(4, CHUNK_SIZE).download(config, distribution);
+
+		assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+	}
+
+	@Test
+	public void connectionsUseConfiguredTimeouts() throws Exception {
+		ITimeoutConfig timeouts = mock(ITimeoutConfig.class);
+		when(timeouts.getConnectionTimeout()).thenReturn(1234);
+		when(timeouts.getReadTimeout()).thenReturn(5678);
+		when(config.getTimeoutConfig()).thenReturn(timeouts);
+
+		HttpURLConnection connection = RangedDownloader.open(config, "http://localhost:" + port + "/" + ARCHIVE);
+
+		assertEquals(1234, connection.getConnectTimeout());
+		assertEquals(5678, connection.getReadTimeout());
+	}
+
+	private static String sha256(byte[] content) throws IOException {
+		File tmp = File.createTempFile("checksum", ".bin");
+		try {
+			Files.write(tmp.toPath(), content);
+			return RangedDownloader.sha256(tmp);
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	class RangeHandler extends AbstractHandler {
+
+		private final Pattern range = Pattern.compile("bytes=(\\d+)-(\\d+)");
+		final List<String> ranges = new CopyOnWriteArrayList<>();
+		volatile boolean supportsRanges = true;
+		volatile long failFrom = -1;
+		volatile String checksum;
+
+		@Override
+		public void handle(String target, HttpServletRequest request, HttpServletResponse response, int dispatch)
+				throws IOException {
+			((Request) request).setHandled(true);
+			if (target.equals("/" + ARCHIVE + RangedDownloader.CHECKSUM_SUFFIX)) {
+				response.setStatus(HttpServletResponse.SC_OK);
+				response.getOutputStream().write((checksum + "  " + ARCHIVE + "\n").getBytes("US-ASCII"));
+				return;
+			}
+			if (!target.equals("/" + ARCHIVE)) {
+				response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+			String rangeHeader = request.getHeader("Range");
+			if (!supportsRanges || rangeHeader == null) {
+				response.setStatus(HttpServletResponse.SC_OK);
+				response.setContentLength(content.length);
+				response.getOutputStream().write(content);
+				return;
+			}
+			Matcher matcher = range.matcher(rangeHeader);
+			if (!matcher.matches()) {
+				response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			}
+			int start = Integer.parseInt(matcher.group(1));
+			int end = Math.min(content.length - 1, Integer.parseInt(matcher.group(2)));
+			ranges.add(rangeHeader);
+			if (failFrom >= 0 && start >= failFrom) {
+				response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+				return;
+			}
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+			response.setHeader("ETag", "\"test\"");
+			response.setContentLength(end - start + 1);
+			response.getOutputStream().write(content, start, end - start + 1);
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.flapdoodle.embed.mongo.Command;
+import de.flapdoodle.embed.mongo.Paths;
+import de.flapdoodle.embed.mongo.store.StreamingExtractedArtifactStore.ExecutableMode;
+import de.flapdoodle.embed.process.config.store.IDownloadConfig;
+import de.flapdoodle.embed.process.config.store.IPackageResolver;
+import de.flapdoodle.embed.process.distribution.BitSize;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.distribution.GenericVersion;
+import de.flapdoodle.embed.process.distribution.Platform;
+import de.flapdoodle.embed.process.extract.IExtractedFileSet;
+import de.flapdoodle.embed.process.extract.UUIDTempNaming;
+import de.flapdoodle.embed.process.io.directories.FixedPath;
+import de.flapdoodle.embed.process.store.IDownloader;
+
+public class StreamingExtractedArtifactStoreTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private final Distribution distribution = new Distribution(new GenericVersion("3.4.2"), Platform.Linux, BitSize.B64);
+
+	@Test
+	public void firstAccessExtractsExecutablesOfAllCommands() throws Exception {
+		File artifacts = temp.newFolder("artifacts");
+		File archive = new File(artifacts, new Paths(Command.MongoD).getPath(distribution));
+		tgz(archive, "mongodb-linux-x86_64-3.4.2/bin/");
+
+		List<IPackageResolver> allCommands = new ArrayList<>();
+		for (Command command : Command.values()) {
+			allCommands.add(new Paths(command));
+		}
+		IDownloader downloader = mock(IDownloader.class);
+
+		IExtractedFileSet mongod = store(artifacts, Command.MongoD, downloader, allCommands).extractFileSet(distribution);
+		assertTrue(mongod.executable().canExecute());
+
+		File extracted = new File(temp.getRoot(), "extracted/linux/mongodb-linux-x86_64-3.4.2");
+		assertEquals(Command.values().length, StreamingExtractedArtifactStore.readIndex(extracted).size());
+
+		// the archive is not needed for other commands anymore
+		assertTrue(archive.delete());
+		IExtractedFileSet mongoimport = store(artifacts, Command.MongoImport, downloader, allCommands).extractFileSet(distribution);
+		assertTrue(mongoimport.executable().isFile());
+		verifyZeroInteractions(downloader);
+	}
+
+	@Test
+	public void commandMissingInArchiveIsRecordedAndFailsWithoutArchiveAccess() throws Exception {
+		File artifacts = temp.newFolder("artifacts");
+		File archive = new File(artifacts, new Paths(Command.MongoD).getPath(distribution));
+		tgz(archive, "mongodb-linux-x86_64-3.4.2/bin/", Command.MongoD);
+		List<IPackageResolver> allCommands = new ArrayList<>();
+		for (Command command : Command.values()) {
+			allCommands.add(new Paths(command));
+		}
+
+		store(artifacts, Command.MongoD, mock(IDownloader.class), allCommands).extractFileSet(distribution);
+		File extracted = new File(temp.getRoot(), "extracted/linux/mongodb-linux-x86_64-3.4.2");
+		Properties index = StreamingExtractedArtifactStore.readIndex(extracted);
+		assertEquals(StreamingExtractedArtifactStore.ABSENT, index.getProperty(Command.MongoS.commandName()));
+
+		assertTrue(archive.delete());
+		IDownloader downloader = mock(IDownloader.class);
+		try {
+			store(artifacts, Command.MongoS, downloader, allCommands).extractFileSet(distribution);
+			fail("mongos is not in the archive");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains(StreamingExtractedArtifactStore.INDEX_FILE));
+		}
+		verifyZeroInteractions(downloader);
+	}
+
+	@Test
+	public void fileNotMatchingTheIndexIsExtractedAgain() throws Exception {
+		File artifacts = temp.newFolder("artifacts");
+		tgz(new File(artifacts, new Paths(Command.MongoD).getPath(distribution)), "mongodb-linux-x86_64-3.4.2/bin/");
+		StreamingExtractedArtifactStore store = store(artifacts, Command.MongoD, mock(IDownloader.class),
+				new ArrayList<IPackageResolver>());
+		store.extractFileSet(distribution);
+
+		File mongod = new File(temp.getRoot(), "extracted/linux/mongodb-linux-x86_64-3.4.2/mongod");
+		Files.write(mongod.toPath(), new byte[0]);
+		store.extractFileSet(distribution);
+
+		assertEquals(Command.MongoD.commandName(), new String(Files.readAllBytes(mongod.toPath()), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void sharedModeRunsTheExtractedExecutable() throws Exception {
+		File artifacts = temp.newFolder("artifacts");
+		tgz(new File(artifacts, new Paths(Command.MongoD).getPath(distribution)), "mongodb-linux-x86_64-3.4.2/bin/");
+		StreamingExtractedArtifactStore store = store(artifacts, Command.MongoD, mock(IDownloader.class),
+				new ArrayList<IPackageResolver>(), ExecutableMode.SHARED);
+
+		IExtractedFileSet first = store.extractFileSet(distribution);
+		IExtractedFileSet second = store.extractFileSet(distribution);
+		File extracted = new File(temp.getRoot(), "extracted/linux/mongodb-linux-x86_64-3.4.2/mongod");
+		assertEquals(extracted.getAbsoluteFile(), first.executable().getAbsoluteFile());
+		assertEquals(first.executable(), second.executable());
+
+		store.removeFileSet(distribution, first);
+		assertTrue(second.executable().canExecute());
+	}
+
+	@Test
+	public void hardlinkModeLinksIntoTempDir() throws Exception {
+		File artifacts = temp.newFolder("artifacts");
+		tgz(new File(artifacts, new Paths(Command.MongoD).getPath(distribution)), "mongodb-linux-x86_64-3.4.2/bin/");
+		StreamingExtractedArtifactStore store = store(artifacts, Command.MongoD, mock(IDownloader.class),
+				new ArrayList<IPackageResolver>(), ExecutableMode.HARDLINK);
+
+		IExtractedFileSet files = store.extractFileSet(distribution);
+		File extracted = new File(temp.getRoot(), "extracted/linux/mongodb-linux-x86_64-3.4.2/mongod");
+		assertFalse(extracted.getAbsoluteFile().equals(files.executable().getAbsoluteFile()));
+		assertTrue(Files.isSameFile(extracted.toPath(), files.executable().toPath()));
+
+		store.removeFileSet(distribution, files);
+		assertFalse(files.executable().exists());
+		assertTrue(extracted.isFile());
+	}
+
+	private StreamingExtractedArtifactStore store(File artifacts, Command command, IDownloader downloader,
+			List<IPackageResolver> allCommands) throws IOException {
+		return store(artifacts, command, downloader, allCommands, ExecutableMode.COPY);
+	}
+
+	private StreamingExtractedArtifactStore store(File artifacts, Command command, IDownloader downloader,
+			List<IPackageResolver> allCommands, ExecutableMode executableMode) throws IOException {
+		IDownloadConfig downloadConfig = mock(IDownloadConfig.class);
+		when(downloadConfig.getArtifactStorePath()).thenReturn(new FixedPath(artifacts.getAbsolutePath()));
+		when(downloadConfig.getPackageResolver()).thenReturn(new Paths(command));
+		return new StreamingExtractedArtifactStore(downloadConfig, downloader,
+				new FixedPath(new File(temp.getRoot(), "extracted").getAbsolutePath()),
+				new FixedPath(temp.newFolder().getAbsolutePath()), new UUIDTempNaming(), allCommands, null, executableMode);
+	}
+
+	private static void tgz(File archive, String prefix) throws IOException {
+		tgz(archive, prefix, Command.values());
+	}
+
+	private static void tgz(File archive, String prefix, Command... commands) throws IOException {
+		archive.getParentFile().mkdirs();
+		try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(new FileOutputStream(archive)))) {
+			for (Command command : commands) {
+				byte[] content = command.commandName().getBytes(StandardCharsets.UTF_8);
+				TarArchiveEntry entry = new TarArchiveEntry(prefix + command.commandName());
+				entry.setSize(content.length);
+				tar.putArchiveEntry(entry);
+				tar.write(content);
+				tar.closeArchiveEntry();
+			}
+		}
+	}
+}
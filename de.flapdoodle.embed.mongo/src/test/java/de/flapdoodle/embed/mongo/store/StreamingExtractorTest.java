@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.flapdoodle.embed.process.config.store.FileSet;
+import de.flapdoodle.embed.process.config.store.FileType;
+import de.flapdoodle.embed.process.distribution.ArchiveType;
+
+public class StreamingExtractorTest {
+
+	private static final String[] ENTRIES = { "mongodb-linux-x86_64-3.4.2/README", "mongodb-linux-x86_64-3.4.2/bin/mongod",
+			"mongodb-linux-x86_64-3.4.2/bin/mongos", "mongodb-linux-x86_64-3.4.2/bin/mongo" };
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void extractsOnlyRequestedEntriesFromTgz() throws Exception {
+		File archive = tgz(ENTRIES);
+		File destination = temp.newFolder("extracted");
+		FileSet fileSet = FileSet.builder().addEntry(FileType.Executable, "mongod").build();
+
+		Map<FileSet.Entry, File> files = StreamingExtractor.extract(archive, ArchiveType.TGZ, destination, fileSet.entries());
+
+		assertEquals(1, files.size());
+		File mongod = files.values().iterator().next();
+		assertArrayEquals(ENTRIES[1].getBytes(StandardCharsets.UTF_8), Files.readAllBytes(mongod.toPath()));
+		assertTrue(mongod.canExecute());
+		assertEquals(1, destination.list().length);
+	}
+
+	@Test
+	public void extractsOnlyRequestedEntriesFromZip() throws Exception {
+		File archive = zip(ENTRIES);
+		File destination = temp.newFolder("extracted");
+		FileSet fileSet = FileSet.builder().addEntry(FileType.Executable, "mongos").build();
+
+		Map<FileSet.Entry, File> files = StreamingExtractor.extract(archive, ArchiveType.ZIP, destination, fileSet.entries());
+
+		assertArrayEquals(ENTRIES[2].getBytes(StandardCharsets.UTF_8), Files.readAllBytes(files.values().iterator().next().toPath()));
+		assertEquals(1, destination.list().length);
+	}
+
+	@Test
+	public void extractsOptionalEntriesInSamePass() throws Exception {
+		File archive = tgz(ENTRIES);
+		File destination = temp.newFolder("extracted");
+		FileSet required = FileSet.builder().addEntry(FileType.Executable, "mongod").build();
+		FileSet optional = FileSet.builder()
+				.addEntry(FileType.Executable, "mongos")
+				.addEntry(FileType.Executable, "mongoimport")
+				.build();
+
+		Map<FileSet.Entry, File> files = StreamingExtractor.extract(archive, ArchiveType.TGZ, destination, required.entries(),
+				optional.entries());
+
+		assertEquals(2, files.size());
+		assertTrue(new File(destination, "mongod").isFile());
+		assertTrue(new File(destination, "mongos").isFile());
+	}
+
+	@Test
+	public void missingEntryFails() throws Exception {
+		File archive = tgz(ENTRIES[0]);
+		FileSet fileSet = FileSet.builder().addEntry(FileType.Executable, "mongod").build();
+		try {
+			StreamingExtractor.extract(archive, ArchiveType.TGZ, temp.newFolder("extracted"), fileSet.entries());
+			fail("should fail");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("could not find"));
+		}
+	}
+
+	private File tgz(String... names) throws IOException {
+		File archive = temp.newFile("archive.tgz");
+		try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(new FileOutputStream(archive)))) {
+			for (String name : names) {
+				byte[] content = name.getBytes(StandardCharsets.UTF_8);
+				TarArchiveEntry entry = new TarArchiveEntry(name);
+				entry.setSize(content.length);
+				tar.putArchiveEntry(entry);
+				tar.write(content);
+				tar.closeArchiveEntry();
+			}
+		}
+		return archive;
+	}
+
+	private File zip(String... names) throws IOException {
+		File archive = temp.newFile("archive.zip");
+		try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+			for (String name : names) {
+				zip.putNextEntry(new ZipEntry(name));
+				zip.write(name.getBytes(StandardCharsets.UTF_8));
+				zip.closeEntry();
+			}
+		}
+		return archive;
+	}
+}
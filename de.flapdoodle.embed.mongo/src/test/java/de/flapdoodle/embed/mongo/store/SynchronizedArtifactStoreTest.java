@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.io.directories.FixedPath;
+import de.flapdoodle.embed.process.store.IArtifactStore;
+
+public class SynchronizedArtifactStoreTest {
+
+	private static final int CALLERS = 8;
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void concurrentCallersShareOneDownload() throws Exception {
+		final AtomicInteger downloads = new AtomicInteger();
+		final AtomicInteger concurrent = new AtomicInteger();
+		final AtomicInteger maxConcurrent = new AtomicInteger();
+		IArtifactStore delegate = mock(IArtifactStore.class);
+		Distribution distribution = Distribution.detectFor(Version.Main.PRODUCTION);
+		when(delegate.checkDistribution(distribution)).thenAnswer(invocation -> {
+			maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+			downloads.incrementAndGet();
+			Thread.sleep(300);
+			concurrent.decrementAndGet();
+			return true;
+		});
+
+		final SynchronizedArtifactStore store = new SynchronizedArtifactStore(delegate, new FixedPath(temp.getRoot().getAbsolutePath()));
+		final CountDownLatch go = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < CALLERS; i++) {
+				results.add(executor.submit(() -> {
+					go.await();
+					return store.checkDistribution(distribution);
+				}));
+			}
+			go.countDown();
+			for (Future<Boolean> result : results) {
+				assertTrue(result.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(1, maxConcurrent.get());
+		assertEquals(1, downloads.get());
+		assertTrue(new File(new File(temp.getRoot(), SynchronizedArtifactStore.LOCK_DIR),
+				SynchronizedArtifactStore.keyOf(distribution) + ".lock").isFile());
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assume.assumeFalse;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mongodb.ServerAddress;
+
+import de.flapdoodle.embed.mongo.config.Net;
+
+public class LocalMongoClientsTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void unixSocketFallsBackToTcpWithoutUnixServerAddress() throws Exception {
+		// true for the driver this module builds against (3.4.2)
+		assumeFalse(hasUnixServerAddress());
+		Net net = Net.unixSocket(temp.getRoot(), 27017);
+
+		assertFalse(LocalMongoClients.unixSocketsSupported());
+		assertEquals(new ServerAddress(net.getServerAddress(), 27017), LocalMongoClients.serverAddress(net));
+	}
+
+	@Test
+	public void tcpNetConnectsOverTcp() throws Exception {
+		Net net = new Net(27017, false);
+
+		assertEquals(new ServerAddress(net.getServerAddress(), 27017), LocalMongoClients.serverAddress(net));
+	}
+
+	private static boolean hasUnixServerAddress() {
+		try {
+			Class.forName(LocalMongoClients.UNIX_SERVER_ADDRESS);
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+}
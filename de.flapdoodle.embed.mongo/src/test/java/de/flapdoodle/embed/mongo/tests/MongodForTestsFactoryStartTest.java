@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.IMongodConfig;
+import de.flapdoodle.embed.mongo.config.PortAllocator;
+import de.flapdoodle.embed.mongo.config.PortAllocator.Reservation;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.runtime.PortAlreadyInUseException;
+
+public class MongodForTestsFactoryStartTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private int port;
+	// a single port, so a reservation that is not released fails the next one
+	private PortAllocator portAllocator;
+	private MongodStarter runtime = mock(MongodStarter.class);
+
+	@Before
+	public void singlePortAllocator() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		portAllocator = new PortAllocator(temp.newFolder(), port, port);
+	}
+
+	@Test
+	public void portTakenByAnotherProcessStartsAgain() throws Exception {
+		MongodExecutable taken = mock(MongodExecutable.class);
+		MongodExecutable started = mock(MongodExecutable.class);
+		MongodProcess process = mock(MongodProcess.class);
+		when(runtime.prepare(any(IMongodConfig.class))).thenReturn(taken, started);
+		when(taken.start()).thenThrow(new PortAlreadyInUseException(port, "taken"));
+		when(started.start()).thenReturn(process);
+
+		MongodForTestsFactory factory = new MongodForTestsFactory(Version.Main.PRODUCTION, null, portAllocator, runtime);
+		verify(taken).stop();
+		assertNoFreePort();
+
+		factory.shutdown();
+		verify(process).stop();
+		verify(started).stop();
+		assertPortReleased();
+	}
+
+	@Test
+	public void portTakenOnEveryAttemptReleasesReservation() throws Exception {
+		MongodExecutable taken = mock(MongodExecutable.class);
+		when(runtime.prepare(any(IMongodConfig.class))).thenReturn(taken);
+		when(taken.start()).thenThrow(new PortAlreadyInUseException(port, "taken"));
+
+		try {
+			new MongodForTestsFactory(Version.Main.PRODUCTION, null, portAllocator, runtime);
+			fail("port is always taken");
+		} catch (PortAlreadyInUseException e) {
+			assertEquals(port, e.getPort());
+		}
+		verify(taken, times(MongodForTestsFactory.MAX_START_ATTEMPTS)).stop();
+		assertPortReleased();
+	}
+
+	@Test
+	public void failedPrepareReleasesReservation() throws Exception {
+		IllegalStateException failure = new IllegalStateException("extraction failed");
+		when(runtime.prepare(any(IMongodConfig.class))).thenThrow(failure);
+
+		try {
+			new MongodForTestsFactory(Version.Main.PRODUCTION, null, portAllocator, runtime);
+			fail("prepare failed");
+		} catch (IllegalStateException e) {
+			assertSame(failure, e);
+		}
+		assertPortReleased();
+	}
+
+	@Test
+	public void failedStartReleasesReservation() throws Exception {
+		MongodExecutable executable = mock(MongodExecutable.class);
+		when(runtime.prepare(any(IMongodConfig.class))).thenReturn(executable);
+		when(executable.start()).thenThrow(new IOException("could not start"));
+
+		try {
+			new MongodForTestsFactory(Version.Main.PRODUCTION, null, portAllocator, runtime);
+			fail("start failed");
+		} catch (IOException e) {
+			assertEquals("could not start", e.getMessage());
+		}
+		verify(executable).stop();
+		assertPortReleased();
+	}
+
+	private void assertNoFreePort() {
+		try {
+			portAllocator.reserve().close();
+			fail("port is still reserved by the factory");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	private void assertPortReleased() throws IOException {
+		try (Reservation reservation = portAllocator.reserve()) {
+			assertEquals(port, reservation.port());
+		}
+	}
+}
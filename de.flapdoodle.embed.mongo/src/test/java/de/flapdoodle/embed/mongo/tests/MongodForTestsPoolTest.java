@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.Document;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.mongodb.MongoClient;
+
+import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
+import de.flapdoodle.embed.mongo.distribution.Version;
+
+public class MongodForTestsPoolTest {
+	private static MongodForTestsPool pool;
+
+	@BeforeClass
+	public static void setMongoDB() throws IOException {
+		pool = MongodForTestsPool.with(Version.Main.PRODUCTION, 1);
+	}
+
+	@AfterClass
+	public static void tearDownMongoDB() throws Exception {
+		pool.shutdown();
+	}
+
+	@Test
+	public void releasedMongodIsReusedWithoutUserDatabases() throws Exception {
+		MongodForTestsFactory first = pool.lease();
+		try (MongoClient mongo = first.newMongo()) {
+			mongo.getDatabase("pooled").getCollection("testCollection").insertOne(new Document("name", "MongoDB"));
+			assertTrue(databaseNames(mongo).contains("pooled"));
+		}
+
+		assertNull("all instances leased", pool.lease(100, TimeUnit.MILLISECONDS));
+		pool.release(first);
+
+		MongodForTestsFactory second = pool.lease();
+		try (MongoClient mongo = second.newMongo()) {
+			assertSame(first, second);
+			assertFalse(databaseNames(mongo).contains("pooled"));
+		} finally {
+			pool.release(second);
+		}
+	}
+
+	@Test
+	public void secondReleaseIsRejectedAndInstanceIsLeasedOnlyOnce() throws Exception {
+		MongodForTestsFactory instance = pool.lease();
+		pool.release(instance);
+		try {
+			pool.release(instance);
+			fail("released twice");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("not leased"));
+		}
+
+		MongodForTestsFactory leased = pool.lease();
+		try {
+			assertSame(instance, leased);
+			assertNull("instance must not be in the pool twice", pool.lease(100, TimeUnit.MILLISECONDS));
+		} finally {
+			pool.release(leased);
+		}
+	}
+
+	@Test
+	public void instanceFailingCleanupIsReplaced() throws Exception {
+		MongodForTestsFactory broken = mock(MongodForTestsFactory.class);
+		MongodForTestsFactory replacement = mock(MongodForTestsFactory.class);
+		MongodForTestsPool mocked = poolOf(1, true, broken, replacement);
+		try {
+			mocked.release(mocked.lease());
+
+			verify(broken).shutdown();
+			assertSame(replacement, mocked.lease(5, TimeUnit.SECONDS));
+		} finally {
+			mocked.shutdown();
+		}
+		verify(replacement).shutdown();
+	}
+
+	@Test
+	public void failedReplacementShrinksPoolInsteadOfBlockingLease() throws Exception {
+		MongodForTestsFactory broken = mock(MongodForTestsFactory.class);
+		MongodForTestsPool mocked = poolOf(1, true, broken);
+		try {
+			try {
+				mocked.release(mocked.lease());
+				fail("replacement could not be started");
+			} catch (IOException e) {
+				assertTrue(e.getMessage().contains("could not start"));
+			}
+			verify(broken).shutdown();
+
+			try {
+				mocked.lease();
+				fail("no mongod left");
+			} catch (IllegalStateException e) {
+				assertTrue(e.getMessage().contains("no mongod left"));
+			}
+		} finally {
+			mocked.shutdown();
+		}
+	}
+
+	@Test
+	public void shutdownWakesWaitingLease() throws Exception {
+		final MongodForTestsPool mocked = poolOf(1, false, mock(MongodForTestsFactory.class));
+		mocked.lease();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<MongodForTestsFactory> waiting = executor.submit(() -> mocked.lease());
+			Thread.sleep(200);
+			assertFalse(waiting.isDone());
+
+			mocked.shutdown();
+
+			try {
+				waiting.get(5, TimeUnit.SECONDS);
+				fail("pool is shut down");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * a pool that hands out the given instances instead of starting mongod
+	 */
+	private static MongodForTestsPool poolOf(int size, final boolean cleanupFails, MongodForTestsFactory... started)
+			throws IOException {
+		final Deque<MongodForTestsFactory> toStart = new ArrayDeque<>(Arrays.asList(started));
+		return new MongodForTestsPool(Version.Main.PRODUCTION, size) {
+			@Override
+			protected MongodForTestsFactory newInstance(IFeatureAwareVersion version) throws IOException {
+				MongodForTestsFactory ret = toStart.poll();
+				if (ret == null) {
+					throw new IOException("could not start mongod");
+				}
+				return ret;
+			}
+
+			@Override
+			protected void clean(MongodForTestsFactory instance) throws IOException {
+				if (cleanupFails) {
+					throw new IOException("could not drop databases");
+				}
+			}
+		};
+	}
+
+	private static List<String> databaseNames(MongoClient mongo) {
+		return mongo.listDatabaseNames().into(new ArrayList<String>());
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bson.Document;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoCollection;
+
+import de.flapdoodle.embed.mongo.distribution.Version;
+
+public class MongodForTestsTemplateTest {
+
+	@ClassRule
+	public static TemporaryFolder temp = new TemporaryFolder();
+
+	private static final AtomicInteger loads = new AtomicInteger();
+	private static File templateDir;
+	private static MongodForTestsTemplate template;
+
+	@BeforeClass
+	public static void prepareTemplate() throws Exception {
+		templateDir = new File(temp.getRoot(), "template");
+		template = MongodForTestsTemplate.prepare(Version.Main.PRODUCTION, templateDir, running -> {
+			loads.incrementAndGet();
+			try (MongoClient mongo = running.newMongo()) {
+				mongo.getDatabase("fixtures").getCollection("testCollection").insertOne(new Document("name", "MongoDB"));
+			}
+		});
+	}
+
+	@Test
+	public void forksSeeFixturesButNotEachOthersChanges() throws Exception {
+		MongodForTestsFactory first = template.fork();
+		MongodForTestsFactory second = template.fork();
+		try (MongoClient firstMongo = first.newMongo(); MongoClient secondMongo = second.newMongo()) {
+			MongoCollection<Document> firstCollection = firstMongo.getDatabase("fixtures").getCollection("testCollection");
+			MongoCollection<Document> secondCollection = secondMongo.getDatabase("fixtures").getCollection("testCollection");
+			assertEquals(1, firstCollection.count());
+			assertEquals(1, secondCollection.count());
+
+			firstCollection.insertOne(new Document("name", "changed"));
+			assertEquals(2, firstCollection.count());
+			assertEquals(1, secondCollection.count());
+		} finally {
+			first.shutdown();
+			second.shutdown();
+		}
+	}
+
+	@Test
+	public void completeTemplateIsReused() throws Exception {
+		File complete = new File(templateDir.getPath() + MongodForTestsTemplate.COMPLETE_SUFFIX);
+		assertEquals(Version.Main.PRODUCTION.asInDownloadPath(), MongodForTestsTemplate.builtWith(complete));
+		assertEquals(0, new File(templateDir, MongodForTestsTemplate.MONGOD_LOCK).length());
+
+		MongodForTestsTemplate.prepare(Version.Main.PRODUCTION, templateDir, running -> fail("template should be reused"));
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void templateOfOtherVersionIsBuiltAgain() throws Exception {
+		File otherDir = new File(temp.getRoot(), "other");
+		assertTrue(otherDir.mkdirs());
+		File complete = new File(otherDir.getPath() + MongodForTestsTemplate.COMPLETE_SUFFIX);
+		Files.write(complete.toPath(), (MongodForTestsTemplate.VERSION + "=1.0.0\n").getBytes(StandardCharsets.ISO_8859_1));
+
+		AtomicInteger otherLoads = new AtomicInteger();
+		MongodForTestsTemplate.prepare(Version.Main.PRODUCTION, otherDir, running -> otherLoads.incrementAndGet());
+
+		assertEquals(1, otherLoads.get());
+		assertEquals(Version.Main.PRODUCTION.asInDownloadPath(), MongodForTestsTemplate.builtWith(complete));
+	}
+}
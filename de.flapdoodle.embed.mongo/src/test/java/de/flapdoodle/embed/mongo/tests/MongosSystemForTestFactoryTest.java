@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.flapdoodle.embed.mongo.MongodProcess;
+
+public class MongosSystemForTestFactoryTest {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void startedProcessesAreReturnedInOrder() throws Throwable {
+		MongodProcess first = mock(MongodProcess.class);
+		MongodProcess second = mock(MongodProcess.class);
+
+		List<MongodProcess> started = MongosSystemForTestFactory.startAll(executor, Arrays.<Callable<MongodProcess>>asList(
+				slowly(first), () -> second));
+
+		assertEquals(Arrays.asList(first, second), started);
+		verify(first, never()).stop();
+		verify(second, never()).stop();
+	}
+
+	@Test
+	public void failedStartStopsEveryProcessThatDidStart() throws Throwable {
+		MongodProcess member = mock(MongodProcess.class);
+		MongodProcess configServer = mock(MongodProcess.class);
+		IOException failure = new IOException("could not start");
+
+		try {
+			MongosSystemForTestFactory.startAll(executor, Arrays.<Callable<MongodProcess>>asList(
+					() -> {
+						throw failure;
+					}, slowly(member), slowly(configServer)));
+			fail("start should fail");
+		} catch (IOException e) {
+			assertSame(failure, e);
+		}
+
+		// started after the failure was known, must be stopped anyway
+		verify(member).stop();
+		verify(configServer).stop();
+	}
+
+	private static Callable<MongodProcess> slowly(MongodProcess process) {
+		return () -> {
+			Thread.sleep(200);
+			return process;
+		};
+	}
+}
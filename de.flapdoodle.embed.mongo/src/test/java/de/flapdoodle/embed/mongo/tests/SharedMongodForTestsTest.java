@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2011
+ *   Michael Mosmann <michael@mosmann.de>
+ *   Martin Jöhren <m.joehren@googlemail.com>
+ *
+ * with contributions from
+ * 	konstantin-ba@github,Archimedes Trajano	(trajano@github)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.flapdoodle.embed.mongo.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.bson.Document;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoDatabase;
+
+import de.flapdoodle.embed.mongo.distribution.Version;
+
+public class SharedMongodForTestsTest {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void lastDetachStopsSharedMongod() throws Exception {
+		File registryDir = temp.getRoot();
+		SharedMongodForTests first = SharedMongodForTests.attach(Version.Main.PRODUCTION, registryDir);
+		SharedMongodForTests second = SharedMongodForTests.attach(Version.Main.PRODUCTION, registryDir);
+		File registry = new File(registryDir, "mongod-" + Version.Main.PRODUCTION.asInDownloadPath() + ".properties");
+		try {
+			assertEquals(first.getPort(), second.getPort());
+			assertEquals(Arrays.asList(SharedMongodForTests.ownPid(), SharedMongodForTests.ownPid()),
+					SharedMongodForTests.users(SharedMongodForTests.read(registry)));
+
+			try (MongoClient firstMongo = first.newMongo(); MongoClient secondMongo = second.newMongo()) {
+				MongoDatabase firstDatabase = first.newDatabase(firstMongo);
+				firstDatabase.getCollection("testCollection").insertOne(new Document("name", "MongoDB"));
+				assertEquals(1, secondMongo.getDatabase(firstDatabase.getName()).getCollection("testCollection").count());
+				assertFalse(firstDatabase.getName().equals(second.newDatabase(secondMongo).getName()));
+			}
+		} finally {
+			first.detach();
+		}
+		assertTrue(SharedMongodForTests.isRunning(second.getPort()));
+		assertEquals(Arrays.asList(SharedMongodForTests.ownPid()), SharedMongodForTests.users(SharedMongodForTests.read(registry)));
+
+		second.detach();
+		assertFalse(SharedMongodForTests.isRunning(second.getPort()));
+		assertFalse(registry.exists());
+	}
+
+	@Test
+	public void usersOfGoneJvmsAreDropped() throws Exception {
+		assumeTrue(new File("/bin/sh").canExecute());
+		Process gone = new ProcessBuilder("/bin/sh", "-c", "echo $$").start();
+		long gonePid;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(gone.getInputStream(), StandardCharsets.US_ASCII))) {
+			gonePid = Long.parseLong(reader.readLine().trim());
+		}
+		assertEquals(0, gone.waitFor());
+
+		long ownPid = SharedMongodForTests.ownPid();
+		assertEquals(Arrays.asList(ownPid, ownPid), SharedMongodForTests.alive(Arrays.asList(ownPid, gonePid, ownPid)));
+	}
+}